@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.benchmarks;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+
+/**
+ * Embedded Apache Ignite nodes for benchmarks, isolated from any other cluster (local discovery only).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class BenchmarkNodes {
+
+    private BenchmarkNodes() {
+    }
+
+    /**
+     * Starts an embedded server node.
+     *
+     * @param name
+     *     the node name
+     * @param lifecycleBeans
+     *     the lifecycle beans to register, for example, {@link org.hawkore.samples.api.quiz.cluster.QuizNode}
+     * @return the started node
+     */
+    public static Ignite start(String name, LifecycleBean... lifecycleBeans) {
+        return Ignition.start(configuration(name).setLifecycleBeans(lifecycleBeans));
+    }
+
+    /**
+     * Base configuration for an embedded server node.
+     *
+     * @param name
+     *     the node name
+     * @return the ignite configuration
+     */
+    public static IgniteConfiguration configuration(String name) {
+        TcpDiscoveryVmIpFinder ipFinder = new TcpDiscoveryVmIpFinder();
+        ipFinder.setAddresses(Collections.singletonList("127.0.0.1:47500..47509"));
+        return new IgniteConfiguration().setIgniteInstanceName(name)
+                   .setWorkDirectory(new File(System.getProperty("java.io.tmpdir"), "quiz-benchmarks").getAbsolutePath())
+                   .setPeerClassLoadingEnabled(false)
+                   .setMetricsLogFrequency(0)
+                   .setDiscoverySpi(new TcpDiscoverySpi().setLocalAddress("127.0.0.1").setIpFinder(ipFinder));
+    }
+
+}
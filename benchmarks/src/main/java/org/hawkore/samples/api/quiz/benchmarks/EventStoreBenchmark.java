@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import de.codecentric.boot.admin.server.domain.events.InstanceEvent;
+import de.codecentric.boot.admin.server.domain.events.InstanceRegisteredEvent;
+import de.codecentric.boot.admin.server.domain.events.InstanceStatusChangedEvent;
+import de.codecentric.boot.admin.server.domain.values.InstanceId;
+import de.codecentric.boot.admin.server.domain.values.Registration;
+import de.codecentric.boot.admin.server.domain.values.StatusInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.hawkore.springframework.boot.admin.cluster.IgniteEventStore;
+import org.hawkore.springframework.boot.admin.cluster.IgniteEventStoreCompactor;
+import org.hawkore.springframework.boot.admin.cluster.InstanceEventKey;
+import org.hawkore.springframework.boot.admin.cluster.InstanceEventLogHead;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Spring Boot Admin server event store benchmark ({@link IgniteEventStore}), with {@code instances} managed
+ * applications and {@code eventsPerInstance} status changes already stored per application, on an embedded node with
+ * the same event store cache configuration as Spring Boot Admin server (event logs are compacted before each
+ * iteration):
+ * <ul>
+ * <li>{@code append}: appends a status change event to an application (round robin)</li>
+ * <li>{@code find}: reads all events of an application</li>
+ * <li>{@code findAll}: reads all events, as done by Spring Boot Admin server on startup and on UI event stream</li>
+ * </ul>
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class EventStoreBenchmark {
+
+    @Param({"10", "100"})
+    private int instances;
+    @Param({"50"})
+    private int eventsPerInstance;
+    @Param({"100"})
+    private int maxLogSizePerAggregate;
+    private Ignite ignite;
+    private IgniteEventStore store;
+    private IgniteEventStoreCompactor compactor;
+    private InstanceId[] ids;
+    private long[] versions;
+    private int next;
+
+    /**
+     * Set up.
+     */
+    @Setup
+    public void setUp() {
+        ignite = BenchmarkNodes.start("event-store-benchmark");
+        CacheConfiguration<InstanceEventKey, InstanceEvent> config = new CacheConfiguration<>("event-store-benchmark");
+        config.setAtomicityMode(CacheAtomicityMode.TRANSACTIONAL);
+        config.setCacheMode(CacheMode.REPLICATED);
+        CacheConfiguration<String, InstanceEventLogHead> headConfig = new CacheConfiguration<>(
+            "event-store-benchmark-head");
+        headConfig.setAtomicityMode(CacheAtomicityMode.TRANSACTIONAL);
+        headConfig.setCacheMode(CacheMode.REPLICATED);
+        IgniteCache<InstanceEventKey, InstanceEvent> cache = ignite.getOrCreateCache(config);
+        IgniteCache<String, InstanceEventLogHead> headCache = ignite.getOrCreateCache(headConfig);
+        store = new IgniteEventStore(cache, headCache);
+        compactor = new IgniteEventStoreCompactor(cache, headCache, new SimpleMeterRegistry());
+        compactor.setMaxLogSizePerAggregate(maxLogSizePerAggregate);
+        ids = new InstanceId[instances];
+        versions = new long[instances];
+        for (int i = 0; i < instances; i++) {
+            ids[i] = InstanceId.of("instance-" + i);
+            Registration registration = Registration.create("application-" + i,
+                "http://10.244.3." + i + ":8080/actuator/health").build();
+            store.append(Collections.singletonList(new InstanceRegisteredEvent(ids[i], 0, registration))).block();
+            for (int j = 1; j <= eventsPerInstance; j++) {
+                append(i);
+            }
+        }
+    }
+
+    /**
+     * Compacts event logs before each iteration, as done in background by Spring Boot Admin server.
+     */
+    @Setup(Level.Iteration)
+    public void compact() {
+        compactor.compact();
+    }
+
+    /**
+     * Tear down.
+     *
+     * @throws Exception
+     *     the exception
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        store.destroy();
+        ignite.close();
+    }
+
+    private void append(int i) {
+        long version = ++versions[i];
+        StatusInfo status = version % 2 == 0 ? StatusInfo.ofUp() : StatusInfo.ofDown();
+        store.append(Collections.singletonList(new InstanceStatusChangedEvent(ids[i], version, status))).block();
+    }
+
+    @Benchmark
+    public void append() {
+        next = (next + 1) % instances;
+        append(next);
+    }
+
+    @Benchmark
+    public Long find() {
+        next = (next + 1) % instances;
+        return store.find(ids[next]).count().block();
+    }
+
+    @Benchmark
+    public Long findAll() {
+        return store.findAll().count().block();
+    }
+
+}
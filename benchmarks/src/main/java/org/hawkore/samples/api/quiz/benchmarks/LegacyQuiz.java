@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.benchmarks;
+
+import java.io.Serializable;
+
+/**
+ * Quiz before compact binary layout (plain {@link Serializable}, marshalled by reflection, three boolean responses),
+ * used as baseline.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class LegacyQuiz implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private String email;
+    private boolean yes;
+    private boolean no;
+    private boolean na;
+    private long qts;
+    private long pts;
+    private String apiIp;
+    private String workerIp;
+
+    /**
+     * Instantiates a new Legacy quiz.
+     *
+     * @param email
+     *     the email
+     * @param yes
+     *     the yes
+     * @param no
+     *     the no
+     * @param na
+     *     the na
+     * @param qts
+     *     the qts
+     * @param pts
+     *     the pts
+     * @param apiIp
+     *     the api ip
+     * @param workerIp
+     *     the worker ip
+     */
+    public LegacyQuiz(String email, boolean yes, boolean no, boolean na, long qts, long pts, String apiIp,
+        String workerIp) {
+        this.email = email;
+        this.yes = yes;
+        this.no = no;
+        this.na = na;
+        this.qts = qts;
+        this.pts = pts;
+        this.apiIp = apiIp;
+        this.workerIp = workerIp;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+}
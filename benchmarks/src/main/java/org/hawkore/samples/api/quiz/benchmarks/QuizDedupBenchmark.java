@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteDataStreamer;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.hawkore.samples.api.quiz.cluster.QuizNode;
+import org.hawkore.samples.api.quiz.dedup.QuizBloomFilter;
+import org.hawkore.samples.api.quiz.dedup.QuizEmailIndex;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Duplicated Quiz detection benchmark, for an already surveyed email ({@code existing}) and a new one ({@code
+ * new}), against an embedded node with {@code quizzes} stored Quizzes:
+ * <ul>
+ * <li>{@code sqlLikeCount}: SQL count over {@code quizCache} by email (legacy worker flow)</li>
+ * <li>{@code keyLookup}: exact key lookup on {@code quizEmailIndex} ({@link QuizEmailIndex})</li>
+ * <li>{@code bloomFilter}: local Bloom filter, confirmed with a key lookup when it reports a probably surveyed email
+ * (API nodes edge filter)</li>
+ * </ul>
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class QuizDedupBenchmark {
+
+    private static final String LIKE_COUNT = "select count(*) from \"quizCache\".quiz where email like ?";
+
+    @Param({"10000", "100000"})
+    private int quizzes;
+    private Ignite ignite;
+    private IgniteCache<Long, Quiz> quizCache;
+    private QuizBloomFilter bloom;
+    private int nextExisting;
+    private int nextNew;
+
+    /**
+     * Set up.
+     */
+    @Setup
+    public void setUp() {
+        ignite = BenchmarkNodes.start("dedup-benchmark", new QuizNode());
+        quizCache = ignite.getOrCreateCache(
+            new CacheConfiguration<Long, Quiz>("quizCache").setIndexedTypes(Long.class, Quiz.class));
+        ignite.getOrCreateCache(new CacheConfiguration<String, Long>(QuizEmailIndex.CACHE_NAME).setBackups(1));
+        bloom = new QuizBloomFilter(quizzes, 0.01);
+        try (IgniteDataStreamer<Long, Quiz> streamer = ignite.dataStreamer("quizCache")) {
+            for (int i = 1; i <= quizzes; i++) {
+                streamer.addData((long)i, QuizSamples.quiz(i));
+                bloom.put(QuizSamples.email(i));
+            }
+        }
+        // populates quizEmailIndex from quizCache
+        QuizEmailIndex.exists(QuizSamples.email(1));
+    }
+
+    /**
+     * Tear down.
+     */
+    @TearDown
+    public void tearDown() {
+        ignite.close();
+    }
+
+    private String existing() {
+        nextExisting = nextExisting % quizzes + 1;
+        return QuizSamples.email(nextExisting);
+    }
+
+    private String created() {
+        return QuizSamples.email(quizzes + ++nextNew);
+    }
+
+    @Benchmark
+    public boolean sqlLikeCountExisting() {
+        return sqlLikeCount(existing());
+    }
+
+    @Benchmark
+    public boolean sqlLikeCountNew() {
+        return sqlLikeCount(created());
+    }
+
+    @Benchmark
+    public boolean keyLookupExisting() {
+        return QuizEmailIndex.exists(existing());
+    }
+
+    @Benchmark
+    public boolean keyLookupNew() {
+        return QuizEmailIndex.exists(created());
+    }
+
+    @Benchmark
+    public boolean bloomFilterExisting() {
+        return bloomFilter(existing());
+    }
+
+    @Benchmark
+    public boolean bloomFilterNew() {
+        return bloomFilter(created());
+    }
+
+    private boolean sqlLikeCount(String email) {
+        List<List<?>> rows = quizCache.query(new SqlFieldsQuery(LIKE_COUNT).setArgs(email)).getAll();
+        return ((Number)rows.get(0).get(0)).longValue() > 0;
+    }
+
+    private boolean bloomFilter(String email) {
+        return bloom.mightContain(email) && QuizEmailIndex.exists(email);
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.benchmarks;
+
+import org.hawkore.samples.api.quiz.entities.Quiz;
+
+/**
+ * Representative Quizzes for benchmarks.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class QuizSamples {
+
+    private static final long QTS = 1588000000000L;
+
+    private QuizSamples() {
+    }
+
+    /**
+     * A processed Quiz.
+     *
+     * @param i
+     *     the sample number, to build a unique surveyed email
+     * @return the Quiz
+     */
+    public static Quiz quiz(int i) {
+        Quiz quiz = new Quiz();
+        quiz.setEmail(email(i));
+        quiz.setYes(true);
+        quiz.setQts(QTS + i);
+        quiz.setPts(QTS + i + 15);
+        quiz.setApiIp("10.244.1.23");
+        quiz.setWorkerIp("10.244.2.117");
+        return quiz;
+    }
+
+    /**
+     * Same processed Quiz as {@link #quiz(int)} with legacy layout.
+     *
+     * @param i
+     *     the sample number, to build a unique surveyed email
+     * @return the legacy Quiz
+     */
+    public static LegacyQuiz legacyQuiz(int i) {
+        return new LegacyQuiz(email(i), true, false, false, QTS + i, QTS + i + 15, "10.244.1.23", "10.244.2.117");
+    }
+
+    /**
+     * A surveyed email.
+     *
+     * @param i
+     *     the sample number
+     * @return the email
+     */
+    public static String email(int i) {
+        return "surveyed.user" + i + "@example.com";
+    }
+
+}
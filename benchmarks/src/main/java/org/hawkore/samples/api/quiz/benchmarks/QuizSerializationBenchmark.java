@@ -0,0 +1,153 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCheckedException;
+import org.apache.ignite.marshaller.Marshaller;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Quiz binary serialization benchmark, compact layout ({@link Quiz}) vs legacy layout ({@link LegacyQuiz}), using
+ * the Apache Ignite node's marshaller (the one used for queue items, cache entries and WAL records), and JDK
+ * serialization ({@link JdkSerialization}) of both layouts as a baseline.
+ * <p>
+ * Serialized sizes are reported by {@link QuizSerializedSizes}.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class QuizSerializationBenchmark {
+
+    private Ignite ignite;
+    private Marshaller marshaller;
+    private ClassLoader classLoader;
+    private Quiz quiz;
+    private LegacyQuiz legacyQuiz;
+    private byte[] quizBytes;
+    private byte[] legacyQuizBytes;
+    private byte[] jdkQuizBytes;
+    private byte[] jdkLegacyQuizBytes;
+
+    /**
+     * Set up.
+     *
+     * @throws IgniteCheckedException
+     *     the ignite checked exception
+     * @throws IOException
+     *     the io exception
+     */
+    @Setup
+    public void setUp() throws IgniteCheckedException, IOException {
+        ignite = BenchmarkNodes.start("serialization-benchmark");
+        marshaller = ignite.configuration().getMarshaller();
+        classLoader = getClass().getClassLoader();
+        quiz = QuizSamples.quiz(1);
+        legacyQuiz = QuizSamples.legacyQuiz(1);
+        quizBytes = marshaller.marshal(quiz);
+        legacyQuizBytes = marshaller.marshal(legacyQuiz);
+        jdkQuizBytes = JdkSerialization.serialize(quiz);
+        jdkLegacyQuizBytes = JdkSerialization.serialize(legacyQuiz);
+    }
+
+    /**
+     * Tear down.
+     */
+    @TearDown
+    public void tearDown() {
+        ignite.close();
+    }
+
+    @Benchmark
+    public byte[] marshalQuiz() throws IgniteCheckedException {
+        return marshaller.marshal(quiz);
+    }
+
+    @Benchmark
+    public byte[] marshalLegacyQuiz() throws IgniteCheckedException {
+        return marshaller.marshal(legacyQuiz);
+    }
+
+    @Benchmark
+    public Object unmarshalQuiz() throws IgniteCheckedException {
+        return marshaller.unmarshal(quizBytes, classLoader);
+    }
+
+    @Benchmark
+    public Object unmarshalLegacyQuiz() throws IgniteCheckedException {
+        return marshaller.unmarshal(legacyQuizBytes, classLoader);
+    }
+
+    @Benchmark
+    public Object roundTripQuiz() throws IgniteCheckedException {
+        return marshaller.unmarshal(marshaller.marshal(quiz), classLoader);
+    }
+
+    @Benchmark
+    public Object roundTripLegacyQuiz() throws IgniteCheckedException {
+        return marshaller.unmarshal(marshaller.marshal(legacyQuiz), classLoader);
+    }
+
+    @Benchmark
+    public byte[] jdkSerializeQuiz() throws IOException {
+        return JdkSerialization.serialize(quiz);
+    }
+
+    @Benchmark
+    public byte[] jdkSerializeLegacyQuiz() throws IOException {
+        return JdkSerialization.serialize(legacyQuiz);
+    }
+
+    @Benchmark
+    public Object jdkDeserializeQuiz() throws IOException, ClassNotFoundException {
+        return JdkSerialization.deserialize(jdkQuizBytes);
+    }
+
+    @Benchmark
+    public Object jdkDeserializeLegacyQuiz() throws IOException, ClassNotFoundException {
+        return JdkSerialization.deserialize(jdkLegacyQuizBytes);
+    }
+
+    @Benchmark
+    public Object jdkRoundTripQuiz() throws IOException, ClassNotFoundException {
+        return JdkSerialization.deserialize(JdkSerialization.serialize(quiz));
+    }
+
+    @Benchmark
+    public Object jdkRoundTripLegacyQuiz() throws IOException, ClassNotFoundException {
+        return JdkSerialization.deserialize(JdkSerialization.serialize(legacyQuiz));
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.benchmarks;
+
+import java.io.IOException;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCheckedException;
+import org.apache.ignite.marshaller.Marshaller;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+
+/**
+ * Reports serialized sizes of Quiz compact layout ({@link Quiz}) vs legacy layout ({@link LegacyQuiz}), with Apache
+ * Ignite binary marshaller and JDK serialization, and checks that compact layout round-trips.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class QuizSerializedSizes {
+
+    private QuizSerializedSizes() {
+    }
+
+    /**
+     * The entry point of application.
+     *
+     * @param args
+     *     the input arguments
+     * @throws IgniteCheckedException
+     *     the ignite checked exception
+     * @throws IOException
+     *     the io exception
+     */
+    public static void main(String[] args) throws IgniteCheckedException, IOException {
+        try (Ignite ignite = BenchmarkNodes.start("serialized-sizes")) {
+            Marshaller marshaller = ignite.configuration().getMarshaller();
+            Quiz quiz = QuizSamples.quiz(1);
+            byte[] quizBytes = marshaller.marshal(quiz);
+            byte[] legacyQuizBytes = marshaller.marshal(QuizSamples.legacyQuiz(1));
+            Quiz read = marshaller.unmarshal(quizBytes, QuizSerializedSizes.class.getClassLoader());
+            if (!quiz.toString().equals(read.toString())) {
+                throw new IllegalStateException("Quiz round-trip mismatch: " + quiz + " != " + read);
+            }
+            System.out.printf("%-12s %6s %6s%n", "Layout", "Bytes", "JDK");
+            System.out.printf("%-12s %6d %6d%n", "compact", quizBytes.length, JdkSerialization.serialize(quiz).length);
+            System.out.printf("%-12s %6d %6d%n", "legacy", legacyQuizBytes.length,
+                JdkSerialization.serialize(QuizSamples.legacyQuiz(1)).length);
+            System.out.printf("Saved %d bytes per Quiz (%.1f%%)%n", legacyQuizBytes.length - quizBytes.length,
+                100.0 * (legacyQuizBytes.length - quizBytes.length) / legacyQuizBytes.length);
+        }
+    }
+
+}
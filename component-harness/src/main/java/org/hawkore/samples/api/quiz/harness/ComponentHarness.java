@@ -0,0 +1,264 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.harness;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.HdrHistogram.Histogram;
+import org.apache.ignite.Ignite;
+import org.hawkore.samples.api.quiz.shard.QuizShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Component load harness for the Quiz pipeline (API node, QUIZS_QUEUE, worker nodes), on a single host without
+ * network access.
+ * <p>
+ * It is not an end-to-end test: Mule applications, HTTP listener and flows are not run. The harness invokes the same
+ * quiz-commons components the flows invoke, in the same order, so it measures Quiz components and the Ignite cluster,
+ * not the Mule runtime nor the HTTP stack.
+ * <p>
+ * Starts one server node and {@code workers} worker nodes as local processes (see {@link HarnessNode}), and an API
+ * node on this process, all of them with the Ignite configuration of the sample cluster (see {@link HarnessNodes}).
+ * Then sends Quizzes at {@code rate} per second (see {@link QuizLoadDriver}), and reports every second and at the end
+ * of the measured time: sustained throughput (stored Quizzes per second), QUIZS_QUEUE depth and latency percentiles.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class ComponentHarness {
+
+    private static final Logger log = LoggerFactory.getLogger(ComponentHarness.class);
+    private static final long JOIN_TIMEOUT = 120000;
+    private final HarnessOptions options;
+    private final List<Process> processes = new ArrayList<>();
+    private final Histogram receiveLatency = new Histogram(2);
+    private final Histogram queueWait = new Histogram(2);
+    private final Histogram pipeline = new Histogram(2);
+    private QuizLoadDriver driver;
+    private QuizPipelineMonitor monitor;
+    private volatile boolean measuring;
+    private long lastSent;
+    private long lastRejected;
+    private long lastStored;
+    private long maxQueueDepth;
+    private int second;
+
+    private ComponentHarness(HarnessOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * The entry point of application.
+     *
+     * @param args
+     *     the harness options, {@code --name=value}, see README.md
+     * @throws Exception
+     *     the exception
+     */
+    public static void main(String[] args) throws Exception {
+        HarnessOptions options = HarnessOptions.parse(args);
+        ComponentHarness harness = new ComponentHarness(options);
+        Runtime.getRuntime().addShutdownHook(new Thread(harness::destroy));
+        try {
+            harness.run();
+        } finally {
+            harness.destroy();
+        }
+        // Ignite threads may still be alive
+        System.exit(0);
+    }
+
+    private void run() throws IOException, InterruptedException {
+        log.info("Starting component harness {}", options);
+        clean(new File(options.getWorkDir()));
+        start(HarnessNodes.SERVER, "quiz-server-0");
+        try (Ignite api = HarnessNodes.start(HarnessNodes.API, "quiz-api-0", options)) {
+            for (int i = 0; i < options.getWorkers(); i++) {
+                start(HarnessNodes.WORKER, "quiz-worker-" + i);
+            }
+            awaitWorkers(api);
+            monitor = new QuizPipelineMonitor(api, options.getShards());
+            driver = new QuizLoadDriver(options);
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+            System.out.printf("%6s %9s %9s %9s %9s %11s %11s %11s%n", "second", "sent/s", "reject/s", "stored/s",
+                "queue", "recv p99", "pipe p50", "pipe p99");
+            reporter.scheduleAtFixedRate(this::report, 1, 1, TimeUnit.SECONDS);
+            if (options.getWarmup() > 0) {
+                log.info("Warming up for {} seconds", options.getWarmup());
+                driver.run(options.getWarmup());
+            }
+            long sent;
+            long stored;
+            synchronized (this) {
+                measuring = true;
+                sent = driver.getSent();
+                stored = monitor.getStored();
+            }
+            long rejected = rejected();
+            long knownDuplicates = driver.getKnownDuplicates();
+            long failed = driver.getFailed();
+            log.info("Measuring for {} seconds", options.getDuration());
+            driver.run(options.getDuration());
+            reporter.shutdownNow();
+            reporter.awaitTermination(10, TimeUnit.SECONDS);
+            synchronized (this) {
+                measuring = false;
+                summary(driver.getSent() - sent, rejected() - rejected, driver.getKnownDuplicates() - knownDuplicates,
+                    driver.getFailed() - failed, monitor.getStored() - stored);
+            }
+            driver.stop();
+            monitor.close();
+        }
+    }
+
+    private void start(String role, String name) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getAbsolutePath());
+        // same JVM options (memory, --add-opens, ...) as this process
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(HarnessNode.class.getName());
+        command.add(role);
+        command.add(name);
+        command.addAll(options.toArgs());
+        File output = new File(options.getWorkDir(), name + ".log");
+        log.info("Starting {} node {}, see {}", role, name, output);
+        processes.add(new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(output).start());
+    }
+
+    private void awaitWorkers(Ignite api) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + JOIN_TIMEOUT;
+        while (api.cluster().forAttribute(QuizShards.ROLE_ATTRIBUTE, QuizShards.WORKER_ROLE).nodes().size()
+                   < options.getWorkers()) {
+            for (Process process : processes) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Harness node exited, see logs on " + options.getWorkDir());
+                }
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Worker nodes not joined, see logs on " + options.getWorkDir());
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        log.info("{} worker nodes joined", options.getWorkers());
+    }
+
+    private synchronized void report() {
+        Histogram interval = driver.getReceiveLatency().getIntervalHistogram();
+        Histogram intervalQueueWait = monitor.getQueueWait().getIntervalHistogram();
+        Histogram intervalPipeline = monitor.getPipeline().getIntervalHistogram();
+        long queueDepth = monitor.queueDepth();
+        long sent = driver.getSent();
+        long rejected = rejected();
+        long stored = monitor.getStored();
+        System.out.printf("%6d %9d %9d %9d %9d %8.1f ms %8d ms %8d ms%n", ++second, sent - lastSent,
+            rejected - lastRejected, stored - lastStored, queueDepth, interval.getValueAtPercentile(99) / 1000.0,
+            intervalPipeline.getValueAtPercentile(50), intervalPipeline.getValueAtPercentile(99));
+        lastSent = sent;
+        lastRejected = rejected;
+        lastStored = stored;
+        if (measuring) {
+            receiveLatency.add(interval);
+            queueWait.add(intervalQueueWait);
+            pipeline.add(intervalPipeline);
+            maxQueueDepth = Math.max(maxQueueDepth, queueDepth);
+        }
+    }
+
+    private long rejected() {
+        return driver.getTooManyRequests() + driver.getServiceUnavailable();
+    }
+
+    private void summary(long sent, long rejected, long knownDuplicates, long failed, long stored) {
+        // latencies of last partial second
+        receiveLatency.add(driver.getReceiveLatency().getIntervalHistogram());
+        queueWait.add(monitor.getQueueWait().getIntervalHistogram());
+        pipeline.add(monitor.getPipeline().getIntervalHistogram());
+        long queueDepth = monitor.queueDepth();
+        double duration = options.getDuration();
+        System.out.println();
+        System.out.printf("Measured %d s at %d Quizzes/s, %.0f%% duplicates, %d workers, %d shards%n",
+            options.getDuration(), options.getRate(), options.getDuplicates() * 100, options.getWorkers(),
+            options.getShards());
+        System.out.printf("%-28s %10d (%.1f/s)%n", "Sent", sent, sent / duration);
+        System.out.printf("%-28s %10d%n", "Known duplicates (API)", knownDuplicates);
+        System.out.printf("%-28s %10d%n", "Rejected (429/503)", rejected);
+        System.out.printf("%-28s %10d%n", "Failed", failed);
+        System.out.printf("%-28s %10d (%.1f/s)%n", "Stored (throughput)", stored, stored / duration);
+        System.out.printf("%-28s %10d max, %d at end%s%n", "Queue depth", Math.max(maxQueueDepth, queueDepth),
+            queueDepth, queueDepth > options.getRate() ? " (not sustained, backlog growing)" : "");
+        System.out.println();
+        System.out.printf("%-28s %9s %9s %9s %9s %9s%n", "Latency (ms)", "p50", "p90", "p99", "p99.9", "max");
+        System.out.printf("%-28s %9.2f %9.2f %9.2f %9.2f %9.2f%n", "receive (API components)",
+            receiveLatency.getValueAtPercentile(50) / 1000.0, receiveLatency.getValueAtPercentile(90) / 1000.0,
+            receiveLatency.getValueAtPercentile(99) / 1000.0, receiveLatency.getValueAtPercentile(99.9) / 1000.0,
+            receiveLatency.getMaxValue() / 1000.0);
+        percentiles("queue wait (qts to pts)", queueWait);
+        percentiles("pipeline (qts to stored)", pipeline);
+    }
+
+    private static void percentiles(String name, Histogram histogram) {
+        System.out.printf("%-28s %9d %9d %9d %9d %9d%n", name, histogram.getValueAtPercentile(50),
+            histogram.getValueAtPercentile(90), histogram.getValueAtPercentile(99),
+            histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+    }
+
+    /*
+     * Harness node processes stop once their standard input is closed, in reverse start order, so worker nodes flush
+     * their counters before server node stops
+     */
+    private synchronized void destroy() {
+        for (int i = processes.size() - 1; i >= 0; i--) {
+            Process process = processes.get(i);
+            try {
+                process.getOutputStream().close();
+                if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (IOException e) {
+                process.destroyForcibly();
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+            }
+        }
+        processes.clear();
+    }
+
+    private static void clean(File dir) throws IOException {
+        if (dir.exists()) {
+            try (Stream<Path> paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+        if (!dir.mkdirs()) {
+            throw new IOException("Unable to create work directory " + dir);
+        }
+    }
+
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.harness;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteLock;
+import org.hawkore.samples.api.quiz.cluster.QuizIds;
+import org.hawkore.samples.api.quiz.dedup.QuizEmailIndex;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+import org.hawkore.samples.api.quiz.ingest.QuizQueueDrainer;
+import org.hawkore.samples.api.quiz.metrics.QuizLatency;
+import org.hawkore.samples.api.quiz.stats.QuizCounters;
+import org.hawkore.samples.api.quiz.store.QuizStreamer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Harness node process: a server node or a worker node, started by {@link ComponentHarness} as a local process, so Quiz
+ * components (bound to the Ignite node of the process) behave as on the sample cluster. The node stops once its
+ * standard input is closed, that is, when {@link ComponentHarness} ends.
+ * <p>
+ * Worker nodes run mule-worker-app batch ingestion ({@code ingest-flow-batch-ensure-quiz-uniqueness}, see
+ * worker.xml): drain a batch of Quizzes from the shards of QUIZS_QUEUE assigned to the worker, then process each Quiz
+ * under the {@code INPUT_QUIZ_PROCESS_LOCK} distributed lock ({@code dedupMode=lock}) or claiming the surveyed email
+ * ({@code dedupMode=email}), and store it with an asynchronous cache put ({@code storeMode=put}) or with {@link
+ * QuizStreamer} ({@code storeMode=stream}).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class HarnessNode {
+
+    private static final Logger log = LoggerFactory.getLogger(HarnessNode.class);
+    private static final String QUEUE_NAME = "QUIZS_QUEUE";
+    private static final String LOCK_NAME = "INPUT_QUIZ_PROCESS_LOCK";
+    private static final String QUIZ_CACHE_NAME = "quizCache";
+    // as quiz.ingest.batch.frequency
+    private static final long POLL_FREQUENCY = 10;
+    private static volatile boolean running = true;
+
+    private HarnessNode() {
+    }
+
+    /**
+     * The entry point of harness node processes.
+     *
+     * @param args
+     *     the node role ({@code server} or {@code worker}), the node name and the harness options
+     * @throws IOException
+     *     the io exception
+     * @throws InterruptedException
+     *     the interrupted exception
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String role = args[0];
+        String name = args[1];
+        HarnessOptions options = HarnessOptions.parse(Arrays.copyOfRange(args, 2, args.length));
+        Ignite ignite = HarnessNodes.start(role, name, options);
+        Thread ingest = null;
+        if (HarnessNodes.WORKER.equals(role)) {
+            ingest = new Thread(() -> ingest(ignite, options), name + "-ingest");
+            ingest.start();
+        }
+        log.info("Harness {} node {} started", role, name);
+        // until ComponentHarness ends
+        while (System.in.read() != -1) {
+            // ignore input
+        }
+        running = false;
+        if (ingest != null) {
+            ingest.join();
+        }
+        ignite.close();
+        System.exit(0);
+    }
+
+    private static void ingest(Ignite ignite, HarnessOptions options) {
+        String workerIp = localIp();
+        while (running) {
+            try {
+                List<Quiz> batch = QuizQueueDrainer.drain(QUEUE_NAME, options.getShards(), options.getBatchSize(),
+                    options.getMaxWait());
+                if (batch.isEmpty()) {
+                    TimeUnit.MILLISECONDS.sleep(POLL_FREQUENCY);
+                } else if (HarnessOptions.DEDUP_EMAIL.equals(options.getDedupMode())) {
+                    for (Quiz quiz : batch) {
+                        try {
+                            claimQuizUniqueness(ignite, options, quiz, workerIp);
+                        } catch (RuntimeException e) {
+                            skipped(quiz, e);
+                        }
+                    }
+                } else {
+                    IgniteLock lock = ignite.reentrantLock(LOCK_NAME, true, false, true);
+                    lock.lock();
+                    try {
+                        for (Quiz quiz : batch) {
+                            try {
+                                ensureQuizUniqueness(ignite, options, quiz, workerIp);
+                            } catch (RuntimeException e) {
+                                skipped(quiz, e);
+                            }
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                if (running) {
+                    log.warn("Unable to ingest Quizzes: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /*
+     * on-error-continue of each Quiz in batch
+     */
+    private static void skipped(Quiz quiz, RuntimeException e) {
+        if (running) {
+            log.error("Unable to process QUIZ from {}, skipped, the rest of the batch is processed: {}",
+                quiz.getEmail(), e.getMessage());
+        }
+    }
+
+    /*
+     * ensure-quiz-uniqueness-flow, under INPUT_QUIZ_PROCESS_LOCK
+     */
+    private static void ensureQuizUniqueness(Ignite ignite, HarnessOptions options, Quiz quiz, String workerIp) {
+        if (!QuizEmailIndex.exists(quiz.getEmail())) {
+            processQuiz(ignite, options, quiz, workerIp);
+        } else {
+            duplicatedQuiz();
+        }
+    }
+
+    /*
+     * claim-quiz-uniqueness-flow
+     */
+    private static void claimQuizUniqueness(Ignite ignite, HarnessOptions options, Quiz quiz, String workerIp) {
+        try {
+            if (QuizEmailIndex.claim(quiz.getEmail())) {
+                processQuiz(ignite, options, quiz, workerIp);
+            } else {
+                duplicatedQuiz();
+            }
+        } catch (RuntimeException e) {
+            QuizEmailIndex.release(quiz.getEmail());
+            throw e;
+        }
+    }
+
+    /*
+     * duplicated-quiz-flow
+     */
+    private static void duplicatedQuiz() {
+        QuizCounters.increment("TOTAL_DUPLICATED_QUIZS");
+    }
+
+    /*
+     * processing-quiz-flow
+     */
+    private static void processQuiz(Ignite ignite, HarnessOptions options, Quiz quiz, String workerIp) {
+        quiz.setWorkerIp(workerIp);
+        quiz.setPts(System.currentTimeMillis());
+        QuizCounters.increment(quiz.isYes() ? "TOTAL_YES" : quiz.isNo() ? "TOTAL_NO" : "TOTAL_NA");
+        QuizCounters.increment("TOTAL_PROC_QUIZS");
+        long id = QuizIds.next(quiz.getEmail());
+        QuizEmailIndex.record(quiz.getEmail(), id);
+        if (HarnessOptions.STORE_STREAM.equals(options.getStoreMode())) {
+            QuizStreamer.store(id, quiz);
+        } else {
+            // as apache-ignite:cache-put with async="true"
+            ignite.cache(QuizGenerations.name(QUIZ_CACHE_NAME)).putAsync(id, quiz).listen(f -> {
+                try {
+                    f.get();
+                } catch (RuntimeException e) {
+                    log.warn("Unable to store Quiz {}: {}", id, e.getMessage());
+                }
+            });
+        }
+        QuizLatency.record(quiz);
+    }
+
+    private static String localIp() {
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            return "";
+        }
+    }
+
+}
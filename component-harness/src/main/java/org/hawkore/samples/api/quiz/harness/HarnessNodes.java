@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.harness;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.configuration.DataStorageConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+
+/**
+ * Starts harness nodes with the same Ignite configuration ({@code ignite-config.xml}) as the sample cluster: server
+ * (spring-boot-apache-ignite-server), API (mule-api-app) and worker (mule-worker-app) nodes.
+ * <p>
+ * Only environment dependent settings are overridden: local discovery ({@code 127.0.0.1:47500..47509}) instead of
+ * Kubernetes discovery, so nodes never join any other cluster, and work and storage directories under the harness work
+ * directory.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class HarnessNodes {
+
+    /**
+     * Server node role
+     */
+    public static final String SERVER = "server";
+    /**
+     * API node role
+     */
+    public static final String API = "api";
+    /**
+     * Worker node role
+     */
+    public static final String WORKER = "worker";
+    private static final String CONFIG_BEAN = "ignite-config";
+    private static final String LOCALHOST = "127.0.0.1";
+
+    private HarnessNodes() {
+    }
+
+    /**
+     * Starts a node with the given role.
+     *
+     * @param role
+     *     the node role: {@link #SERVER}, {@link #API} or {@link #WORKER}
+     * @param name
+     *     the node name, unique within the harness
+     * @param options
+     *     the harness options
+     * @return the started node, if server node, the cluster is activated
+     * @throws IOException
+     *     if configuration could not be read
+     */
+    public static Ignite start(String role, String name, HarnessOptions options) throws IOException {
+        Ignite ignite = Ignition.start(configuration(role, name, options));
+        if (SERVER.equals(role) && !ignite.cluster().active()) {
+            // as spring-boot-apache-ignite-server does, see IgniteConfig
+            ignite.cluster().active(true);
+        }
+        return ignite;
+    }
+
+    /**
+     * Ignite configuration of a node with the given role.
+     *
+     * @param role
+     *     the node role: {@link #SERVER}, {@link #API} or {@link #WORKER}
+     * @param name
+     *     the node name, unique within the harness
+     * @param options
+     *     the harness options
+     * @return the ignite configuration
+     * @throws IOException
+     *     if configuration could not be read
+     */
+    public static IgniteConfiguration configuration(String role, String name, HarnessOptions options)
+        throws IOException {
+        String resource = role + "/ignite-config.xml";
+        IgniteConfiguration config;
+        try (InputStream xml = HarnessNodes.class.getClassLoader().getResourceAsStream(resource)) {
+            if (xml == null) {
+                throw new IllegalArgumentException("Unknown node role " + role + ", missing " + resource);
+            }
+            config = Ignition.loadSpringBean(xml, CONFIG_BEAN);
+        }
+        File workDir = new File(options.getWorkDir(), name);
+        config.setIgniteInstanceName(name);
+        config.setConsistentId(name);
+        config.setLocalHost(LOCALHOST);
+        config.setWorkDirectory(workDir.getAbsolutePath());
+        TcpDiscoveryVmIpFinder ipFinder = new TcpDiscoveryVmIpFinder();
+        ipFinder.setAddresses(Collections.singletonList(LOCALHOST + ":47500..47509"));
+        ((TcpDiscoverySpi)config.getDiscoverySpi()).setLocalAddress(LOCALHOST).setIpFinder(ipFinder);
+        DataStorageConfiguration storage = config.getDataStorageConfiguration();
+        if (storage != null) {
+            storage.setStoragePath(new File(workDir, "persistence").getAbsolutePath());
+            storage.setWalPath(new File(workDir, "wal").getAbsolutePath());
+            storage.setWalArchivePath(new File(workDir, "archive").getAbsolutePath());
+        }
+        return config;
+    }
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.harness;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Load harness options, given as {@code --name=value} arguments, see README.md.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class HarnessOptions {
+
+    /**
+     * Uniqueness strategy under the INPUT_QUIZ_PROCESS_LOCK distributed lock, as quiz.dedup.mode=lock
+     */
+    public static final String DEDUP_LOCK = "lock";
+    /**
+     * Uniqueness strategy claiming the surveyed email, as quiz.dedup.mode=email
+     */
+    public static final String DEDUP_EMAIL = "email";
+    /**
+     * Store mode with an asynchronous cache put per Quiz, as quiz.store.mode=put
+     */
+    public static final String STORE_PUT = "put";
+    /**
+     * Store mode streaming Quizzes, as quiz.store.mode=stream
+     */
+    public static final String STORE_STREAM = "stream";
+    private final Map<String, String> values = new LinkedHashMap<>();
+
+    /**
+     * Instantiates new harness options with defaults.
+     */
+    public HarnessOptions() {
+        values.put("rate", "1000");
+        values.put("duration", "60");
+        values.put("warmup", "10");
+        values.put("duplicates", "0.1");
+        values.put("threads", "16");
+        values.put("workers", "1");
+        values.put("shards", "1");
+        values.put("batchSize", "100");
+        values.put("maxWait", "200");
+        values.put("dedupMode", DEDUP_LOCK);
+        values.put("storeMode", STORE_PUT);
+        values.put("workDir", "target/quiz-component-harness");
+    }
+
+    /**
+     * Parses harness options.
+     *
+     * @param args
+     *     the arguments, {@code --name=value}
+     * @return the harness options, defaults for not given ones
+     * @throws IllegalArgumentException
+     *     if an argument is not a known option
+     */
+    public static HarnessOptions parse(String... args) {
+        HarnessOptions options = new HarnessOptions();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = arg.startsWith("--") && eq > 2 ? arg.substring(2, eq) : null;
+            if (name == null || !options.values.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", available options: " + options);
+            }
+            options.values.put(name, arg.substring(eq + 1));
+        }
+        if (options.getRate() <= 0 || options.getThreads() <= 0 || options.getWorkers() <= 0
+                || options.getShards() <= 0 || options.getDuplicates() < 0 || options.getDuplicates() >= 1
+                || !(DEDUP_LOCK.equals(options.getDedupMode()) || DEDUP_EMAIL.equals(options.getDedupMode()))
+                || !(STORE_PUT.equals(options.getStoreMode()) || STORE_STREAM.equals(options.getStoreMode()))) {
+            throw new IllegalArgumentException("Invalid options: " + options);
+        }
+        return options;
+    }
+
+    /**
+     * @return the options as arguments, to start other harness processes with the same options
+     */
+    public List<String> toArgs() {
+        List<String> args = new ArrayList<>();
+        values.forEach((name, value) -> args.add("--" + name + "=" + value));
+        return args;
+    }
+
+    /**
+     * @return the target rate of received Quizzes per second
+     */
+    public int getRate() {
+        return Integer.parseInt(values.get("rate"));
+    }
+
+    /**
+     * @return the measured load duration in seconds
+     */
+    public int getDuration() {
+        return Integer.parseInt(values.get("duration"));
+    }
+
+    /**
+     * @return the warm up load duration in seconds, not measured
+     */
+    public int getWarmup() {
+        return Integer.parseInt(values.get("warmup"));
+    }
+
+    /**
+     * @return the ratio of received Quizzes from an already surveyed email, from 0 (inclusive) to 1 (exclusive)
+     */
+    public double getDuplicates() {
+        return Double.parseDouble(values.get("duplicates"));
+    }
+
+    /**
+     * @return the number of threads sending Quizzes, like HTTP listener threads on API node
+     */
+    public int getThreads() {
+        return Integer.parseInt(values.get("threads"));
+    }
+
+    /**
+     * @return the number of worker nodes
+     */
+    public int getWorkers() {
+        return Integer.parseInt(values.get("workers"));
+    }
+
+    /**
+     * @return the number of QUIZS_QUEUE shards, as quiz.queue.shards
+     */
+    public int getShards() {
+        return Integer.parseInt(values.get("shards"));
+    }
+
+    /**
+     * @return the max Quizzes per batch drained by workers, as quiz.ingest.batch.size
+     */
+    public int getBatchSize() {
+        return Integer.parseInt(values.get("batchSize"));
+    }
+
+    /**
+     * @return the max time to wait for a batch to be filled in milliseconds, as quiz.ingest.batch.maxWait
+     */
+    public long getMaxWait() {
+        return Long.parseLong(values.get("maxWait"));
+    }
+
+    /**
+     * @return the strategy of workers to ensure one Quiz per surveyed, {@link #DEDUP_LOCK} or {@link #DEDUP_EMAIL},
+     *     as quiz.dedup.mode
+     */
+    public String getDedupMode() {
+        return values.get("dedupMode");
+    }
+
+    /**
+     * @return how workers store processed Quizzes, {@link #STORE_PUT} or {@link #STORE_STREAM}, as quiz.store.mode
+     */
+    public String getStoreMode() {
+        return values.get("storeMode");
+    }
+
+    /**
+     * @return the work directory of harness nodes, cleaned on start
+     */
+    public String getWorkDir() {
+        return values.get("workDir");
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", "[", "]");
+        values.forEach((name, value) -> joiner.add(name + "=" + value));
+        return joiner.toString();
+    }
+
+}
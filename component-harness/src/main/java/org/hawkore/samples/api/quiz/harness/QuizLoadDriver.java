@@ -0,0 +1,239 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.harness;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Recorder;
+import org.hawkore.samples.api.quiz.admission.QuizAdmission;
+import org.hawkore.samples.api.quiz.dedup.QuizEdgeFilter;
+import org.hawkore.samples.api.quiz.dispatch.QuizPublisher;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.hawkore.samples.api.quiz.shard.QuizShards;
+import org.hawkore.samples.api.quiz.stats.QuizCounters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends Quizzes to the API node of the harness at a constant rate, without HTTP.
+ * <p>
+ * Each Quiz goes through the components mule-api-app {@code post:\quiz} flow invokes on queue dispatch mode with
+ * batch publish mode, invoked directly (the flow itself is not run): known
+ * duplicates filter, admission control, and asynchronously, received counter, shard queue of surveyed email, publish
+ * into QUIZS_QUEUE and remember surveyed email. A ratio of requests ({@code duplicates}) reuses a recently surveyed
+ * email.
+ * <p>
+ * Quizzes are scheduled at fixed intervals and receive latency is measured from the scheduled time, so latency of
+ * Quizzes delayed by previous slow ones is not hidden (coordinated omission).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizLoadDriver {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizLoadDriver.class);
+    private static final String QUEUE_NAME = "QUIZS_QUEUE";
+    private static final String API_IP = "127.0.0.1";
+    private static final int RECENT_EMAILS = 1 << 16;
+    private final HarnessOptions options;
+    private final ExecutorService async;
+    private final AtomicLong nextEmail = new AtomicLong();
+    private final AtomicReferenceArray<String> recentEmails = new AtomicReferenceArray<>(RECENT_EMAILS);
+    private final Recorder receiveLatency = new Recorder(2);
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder knownDuplicates = new LongAdder();
+    private final LongAdder tooManyRequests = new LongAdder();
+    private final LongAdder serviceUnavailable = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Instantiates a new Quiz load driver.
+     *
+     * @param options
+     *     the harness options
+     */
+    public QuizLoadDriver(HarnessOptions options) {
+        this.options = options;
+        this.async = Executors.newFixedThreadPool(options.getThreads(), r -> {
+            Thread thread = new Thread(r, "quiz-api-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sends Quizzes at {@code rate} per second for the given time, split across {@code threads} sender threads.
+     *
+     * @param seconds
+     *     the time to send Quizzes in seconds
+     * @throws InterruptedException
+     *     the interrupted exception
+     */
+    public void run(long seconds) throws InterruptedException {
+        int threads = options.getThreads();
+        long period = TimeUnit.SECONDS.toNanos(threads) / options.getRate();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        List<Thread> senders = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            // spread first requests of each thread over a period
+            long first = start + period * i / threads;
+            Thread sender = new Thread(() -> send(first, period, end), "quiz-sender-" + i);
+            sender.setDaemon(true);
+            sender.start();
+            senders.add(sender);
+        }
+        for (Thread sender : senders) {
+            sender.join();
+        }
+    }
+
+    private void send(long first, long period, long end) {
+        for (long scheduled = first; scheduled < end; scheduled += period) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            try {
+                post();
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.debug("Unable to receive Quiz: {}", e.getMessage());
+            }
+            receiveLatency.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled));
+            sent.increment();
+        }
+    }
+
+    /*
+     * Components of POST /quiz, see mule-api-app api-operations.xml
+     */
+    private void post() {
+        Quiz quiz = new Quiz();
+        quiz.setEmail(email());
+        int selected = ThreadLocalRandom.current().nextInt(3);
+        quiz.setYes(selected == 0);
+        quiz.setNo(selected == 1);
+        quiz.setNa(selected == 2);
+        quiz.setQts(System.currentTimeMillis());
+        quiz.setApiIp(API_IP);
+        if (QuizEdgeFilter.isDuplicate(quiz.getEmail())) {
+            QuizCounters.increment("TOTAL_REC_QUIZS");
+            QuizCounters.increment("TOTAL_DUPLICATED_QUIZS");
+            knownDuplicates.increment();
+            return;
+        }
+        Map<String, Object> admission = QuizAdmission.admit(options.getShards());
+        if (!(Boolean)admission.get("admitted")) {
+            if (QuizAdmission.BACKLOG.equals(admission.get("reason"))) {
+                serviceUnavailable.increment();
+            } else {
+                tooManyRequests.increment();
+            }
+            return;
+        }
+        boolean acquired = (Boolean)admission.get("acquired");
+        async.execute(() -> {
+            try {
+                QuizCounters.increment("TOTAL_REC_QUIZS");
+                String queueName = QuizShards.queueName(QUEUE_NAME, quiz.getEmail(), options.getShards());
+                QuizPublisher.publish(queueName, quiz);
+                QuizEdgeFilter.seen(quiz.getEmail());
+            } catch (RuntimeException e) {
+                failed.increment();
+                log.debug("Unable to dispatch Quiz: {}", e.getMessage());
+            } finally {
+                if (acquired) {
+                    QuizAdmission.release();
+                }
+            }
+        });
+    }
+
+    private String email() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long sentEmails = nextEmail.get();
+        if (sentEmails > 0 && random.nextDouble() < options.getDuplicates()) {
+            String recent = recentEmails.get(random.nextInt((int)Math.min(sentEmails, RECENT_EMAILS)));
+            if (recent != null) {
+                return recent;
+            }
+        }
+        long next = nextEmail.getAndIncrement();
+        String email = "surveyed-" + next + "@quiz-component-harness.local";
+        recentEmails.set((int)(next % RECENT_EMAILS), email);
+        return email;
+    }
+
+    /**
+     * Stops dispatching Quizzes.
+     */
+    public void stop() {
+        async.shutdownNow();
+    }
+
+    /**
+     * @return the receive latency recorder, in microseconds
+     */
+    public Recorder getReceiveLatency() {
+        return receiveLatency;
+    }
+
+    /**
+     * @return the number of sent Quizzes
+     */
+    public long getSent() {
+        return sent.sum();
+    }
+
+    /**
+     * @return the number of Quizzes filtered as known duplicates on API node (200)
+     */
+    public long getKnownDuplicates() {
+        return knownDuplicates.sum();
+    }
+
+    /**
+     * @return the number of Quizzes rejected with too many in flight Quizzes (429)
+     */
+    public long getTooManyRequests() {
+        return tooManyRequests.sum();
+    }
+
+    /**
+     * @return the number of Quizzes rejected with too many Quizzes pending to be processed (503)
+     */
+    public long getServiceUnavailable() {
+        return serviceUnavailable.sum();
+    }
+
+    /**
+     * @return the number of Quizzes failed to be received or dispatched
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+}
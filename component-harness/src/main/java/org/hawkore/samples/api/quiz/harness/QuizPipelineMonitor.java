@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.harness;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.cache.Cache;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.EventType;
+import org.HdrHistogram.Recorder;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteQueue;
+import org.apache.ignite.cache.CacheEntryEventSerializableFilter;
+import org.apache.ignite.cache.query.ContinuousQueryWithTransformer;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.lang.IgniteClosure;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+import org.hawkore.samples.api.quiz.shard.QuizShards;
+
+/**
+ * Observes the Quiz pipeline from the API node of the harness: Quizzes pending to be processed on QUIZS_QUEUE (all
+ * shards), and Quizzes stored on {@code quizCache} by workers.
+ * <p>
+ * Stored Quizzes are observed with a continuous query that sends only their timestamps ({@code qts} and {@code pts},
+ * not the whole Quiz), so latencies are measured from the Quiz received timestamp on API node ({@code qts}) to:
+ * <ul>
+ * <li>queue wait: processing start on worker node ({@code pts})</li>
+ * <li>pipeline: stored Quiz notified to API node</li>
+ * </ul>
+ * All harness nodes run on the same host, so timestamps share the same clock.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizPipelineMonitor implements AutoCloseable {
+
+    private static final String QUIZ_CACHE_NAME = "quizCache";
+    private static final String QUEUE_NAME = "QUIZS_QUEUE";
+    private final Ignite ignite;
+    private final int shards;
+    private final Recorder queueWait = new Recorder(2);
+    private final Recorder pipeline = new Recorder(2);
+    private final LongAdder stored = new LongAdder();
+    private final QueryCursor<Cache.Entry<Long, Quiz>> cursor;
+
+    /**
+     * Instantiates a new Quiz pipeline monitor.
+     *
+     * @param ignite
+     *     the API node
+     * @param shards
+     *     the number of QUIZS_QUEUE shards
+     */
+    public QuizPipelineMonitor(Ignite ignite, int shards) {
+        this.ignite = ignite;
+        this.shards = shards;
+        ContinuousQueryWithTransformer<Long, Quiz, long[]> query = new ContinuousQueryWithTransformer<>();
+        query.setRemoteFilterFactory(new FactoryBuilder.SingletonFactory<>(new CreatedOnly()));
+        query.setRemoteTransformerFactory(new FactoryBuilder.SingletonFactory<>(new ToTimestamps()));
+        query.setLocalListener(timestamps -> {
+            long now = System.currentTimeMillis();
+            for (long[] ts : timestamps) {
+                queueWait.recordValue(Math.max(0, ts[1] - ts[0]));
+                pipeline.recordValue(Math.max(0, now - ts[0]));
+                stored.increment();
+            }
+        });
+        cursor = ignite.<Long, Quiz>cache(QuizGenerations.name(QUIZ_CACHE_NAME)).query(query);
+    }
+
+    /**
+     * @return the number of Quizzes pending to be processed on QUIZS_QUEUE, all shards
+     */
+    public long queueDepth() {
+        if (shards <= 1) {
+            return size(QUEUE_NAME);
+        }
+        long size = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            size += size(QuizShards.queueName(QUEUE_NAME, shard));
+        }
+        return size;
+    }
+
+    private long size(String name) {
+        // null if queue was not created yet by publishers
+        IgniteQueue<Object> queue = ignite.queue(name, 0, null);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * @return the queue wait latency recorder, in milliseconds
+     */
+    public Recorder getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * @return the pipeline latency recorder, in milliseconds
+     */
+    public Recorder getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * @return the number of stored Quizzes
+     */
+    public long getStored() {
+        return stored.sum();
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+
+    /**
+     * Accepts only new Quizzes, Quizzes are never updated.
+     */
+    private static class CreatedOnly implements CacheEntryEventSerializableFilter<Long, Quiz> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean evaluate(CacheEntryEvent<? extends Long, ? extends Quiz> event) {
+            return event.getEventType() == EventType.CREATED;
+        }
+
+    }
+
+    /**
+     * Sends only received ({@code qts}) and processing ({@code pts}) timestamps of a new Quiz.
+     */
+    private static class ToTimestamps
+        implements IgniteClosure<CacheEntryEvent<? extends Long, ? extends Quiz>, long[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public long[] apply(CacheEntryEvent<? extends Long, ? extends Quiz> event) {
+            return new long[] {event.getValue().getQts(), event.getValue().getPts()};
+        }
+
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.admission;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicLong;
+import org.apache.ignite.IgniteQueue;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.AtomicConfiguration;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.lifecycle.LifecycleEventType;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+import org.hawkore.samples.api.quiz.shard.QuizShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admission control for received Quizzes, keeps API node's pending work bounded during load spikes.
+ * <p>
+ * A Quiz is rejected when:
+ * <ul>
+ * <li>this node already has {@code maxInFlight} Quizzes being dispatched (reason {@code inFlight}), or</li>
+ * <li>the queue (all its shards) of Quizzes pending to be processed by workers is deeper than {@code highWaterMark}
+ * (reason {@code backlog}).</li>
+ * </ul>
+ * Queue size and workers throughput (TOTAL_PROC_QUIZS per second) are sampled every {@code sampleInterval}
+ * milliseconds, so admission does not add cluster operations per request. For a backlog rejection, the suggested
+ * retry delay is the estimated time for workers to drain the queue under the high-water mark.
+ * <p>
+ * Register it into {@code lifecycleBeans} property of Ignite configuration (see ignite-config.xml).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizAdmission implements LifecycleBean {
+
+    /**
+     * Rejected because too many Quizzes are being dispatched by this node
+     */
+    public static final String IN_FLIGHT = "inFlight";
+    /**
+     * Rejected because too many Quizzes are pending to be processed by workers
+     */
+    public static final String BACKLOG = "backlog";
+    private static final Logger log = LoggerFactory.getLogger(QuizAdmission.class);
+    private static final String PROCESSED_COUNTER = "TOTAL_PROC_QUIZS";
+    private static volatile QuizAdmission active;
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+    private String queueName = "QUIZS_QUEUE";
+    private volatile int shards = 1;
+    private int maxInFlight = 1000;
+    private int highWaterMark = 50000;
+    private long sampleInterval = 500;
+    private long maxRetryAfter = 30;
+    private Semaphore inFlight;
+    private ScheduledExecutorService sampler;
+    private volatile int queueSize;
+    private volatile double throughput;
+    private long lastProcessed = -1;
+    private long lastGeneration;
+    private long lastSampleAt;
+
+    /**
+     * Tries to admit a received Quiz. If an in flight slot was acquired, {@link #release()} must be called once it is
+     * dispatched.
+     *
+     * @param shards
+     *     the number of shards of the queue, {@code quiz.queue.shards} global property (see global.xml), so queue size
+     *     is sampled over the same shards Quizzes are published into
+     * @return the admission result: {@code admitted} (boolean), {@code acquired} (boolean, whether an in flight slot
+     *     was acquired, false if admission is not started yet), and if not admitted, {@code reason} ({@link
+     *     #IN_FLIGHT} or {@link #BACKLOG}) and {@code retryAfter} (suggested seconds to wait before retrying)
+     */
+    public static Map<String, Object> admit(int shards) {
+        QuizAdmission current = active;
+        Map<String, Object> result = new HashMap<>();
+        if (current == null) {
+            // not configured, admit everything
+            result.put("admitted", true);
+            result.put("acquired", false);
+            return result;
+        }
+        // written only on change, not to share a hot cache line between request threads
+        if (current.shards != shards) {
+            current.shards = shards;
+        }
+        if (current.highWaterMark > 0 && current.queueSize > current.highWaterMark) {
+            result.put("admitted", false);
+            result.put("acquired", false);
+            result.put("reason", BACKLOG);
+            result.put("retryAfter", current.backlogRetryAfter());
+            return result;
+        }
+        if (!current.inFlight.tryAcquire()) {
+            result.put("admitted", false);
+            result.put("acquired", false);
+            result.put("reason", IN_FLIGHT);
+            result.put("retryAfter", 1L);
+            return result;
+        }
+        result.put("admitted", true);
+        result.put("acquired", true);
+        return result;
+    }
+
+    /**
+     * Releases the in flight slot acquired by an admitted Quiz, call it only if one was acquired ({@code acquired} of
+     * {@link #admit(int)} result), otherwise this node would admit more than {@code maxInFlight} Quizzes.
+     */
+    public static void release() {
+        QuizAdmission current = active;
+        if (current != null) {
+            current.inFlight.release();
+        }
+    }
+
+    /**
+     * On lifecycle event.
+     *
+     * @param evt
+     *     the lifecycle event
+     */
+    @Override
+    public void onLifecycleEvent(LifecycleEventType evt) {
+        switch (evt) {
+            case AFTER_NODE_START:
+                inFlight = new Semaphore(maxInFlight);
+                sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "quiz-admission-sampler");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                sampler.scheduleWithFixedDelay(this::sample, 0, sampleInterval, TimeUnit.MILLISECONDS);
+                active = this;
+                log.info("Quiz admission started, max in flight {}, high-water mark {} on {}", maxInFlight,
+                    highWaterMark, queueName);
+                break;
+            case BEFORE_NODE_STOP:
+                active = null;
+                if (sampler != null) {
+                    sampler.shutdownNow();
+                    log.info("Quiz admission stopped");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void sample() {
+        try {
+            int sampledShards = shards;
+            if (sampledShards <= 1) {
+                queueSize = size(queueName);
+            } else {
+                int size = 0;
+                for (int shard = 0; shard < sampledShards; shard++) {
+                    size += size(QuizShards.queueName(queueName, shard));
+                }
+                queueSize = size;
+            }
+            // processed counter of the current generation, starts again from 0 once all Quizzes are deleted
+            long generation = QuizGenerations.current();
+            if (generation != lastGeneration) {
+                lastProcessed = -1;
+                lastGeneration = generation;
+            }
+            IgniteAtomicLong processed = ignite.atomicLong(QuizGenerations.name(PROCESSED_COUNTER, generation),
+                new AtomicConfiguration().setCacheMode(CacheMode.REPLICATED), 0, false);
+            long now = System.currentTimeMillis();
+            long count = processed == null ? 0 : processed.get();
+            if (lastProcessed >= 0 && now > lastSampleAt && count >= lastProcessed) {
+                double rate = (count - lastProcessed) * 1000d / (now - lastSampleAt);
+                // exponentially weighted, counters are flushed by workers in bursts
+                throughput = throughput == 0 ? rate : 0.8 * throughput + 0.2 * rate;
+            }
+            lastProcessed = count;
+            lastSampleAt = now;
+        } catch (RuntimeException e) {
+            log.warn("Unable to sample {} size: {}", queueName, e.getMessage());
+        }
+    }
+
+    private int size(String name) {
+        // null if queue was not created yet by publishers
+        IgniteQueue<Object> queue = ignite.queue(name, 0, null);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /*
+     * Estimated seconds for workers to drain the queue under the high-water mark.
+     */
+    private long backlogRetryAfter() {
+        double rate = throughput;
+        if (rate <= 0) {
+            return maxRetryAfter;
+        }
+        long seconds = (long)Math.ceil((queueSize - highWaterMark) / rate);
+        return Math.max(1, Math.min(maxRetryAfter, seconds));
+    }
+
+    /**
+     * Sets the queue of Quizzes pending to be processed by workers.
+     *
+     * @param queueName
+     *     the queue name, defaults to QUIZS_QUEUE
+     */
+    public void setQueueName(String queueName) {
+        this.queueName = queueName;
+    }
+
+    /**
+     * Sets the max number of Quizzes being dispatched by this node at the same time.
+     *
+     * @param maxInFlight
+     *     the max in flight Quizzes, defaults to 1000
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Sets the queue size above which new Quizzes are rejected.
+     *
+     * @param highWaterMark
+     *     the high-water mark, defaults to 50000, 0 to disable
+     */
+    public void setHighWaterMark(int highWaterMark) {
+        this.highWaterMark = highWaterMark;
+    }
+
+    /**
+     * Sets the interval to sample queue size and workers throughput.
+     *
+     * @param sampleInterval
+     *     the sample interval in milliseconds, defaults to 500
+     */
+    public void setSampleInterval(long sampleInterval) {
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * Sets the max suggested retry delay.
+     *
+     * @param maxRetryAfter
+     *     the max retry after in seconds, defaults to 30
+     */
+    public void setMaxRetryAfter(long maxRetryAfter) {
+        this.maxRetryAfter = maxRetryAfter;
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.cluster;
+
+import org.apache.ignite.cache.affinity.rendezvous.RendezvousAffinityFunction;
+
+/**
+ * Affinity function of {@code quizCache}: a Quiz id (see {@link QuizIds}) is mapped to the partition encoded into it,
+ * that is the partition of its surveyed email on {@code quizEmailIndex}.
+ * <p>
+ * Partitions are assigned to nodes as {@link RendezvousAffinityFunction} does, so with the same number of partitions
+ * (1024 by default) a Quiz is stored on the same primary node that owns its surveyed email on {@code quizEmailIndex},
+ * and a Quiz processed on that node (affinity dispatch mode) is stored without another network hop.
+ * <p>
+ * Set it as {@code affinity} property of {@code quizCache} configuration on all nodes, server nodes included (see
+ * ignite-config.xml). The affinity function of an existing cache can not be changed, so on a cluster that already has
+ * {@code quizCache} with another affinity function, server nodes migrate Quiz data to caches of a new Quiz generation
+ * created with this one (see {@link org.hawkore.samples.api.quiz.generation.QuizGenerations}). Existing Quizzes keep
+ * their ids, so they are not colocated with their surveyed email, only Quizzes stored from then on are.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizAffinityFunction extends RendezvousAffinityFunction {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Partition of a key.
+     *
+     * @param key
+     *     the key, a Quiz id
+     * @return the partition encoded into Quiz id, as computed by {@link RendezvousAffinityFunction} for other keys
+     */
+    @Override
+    public int partition(Object key) {
+        if (key instanceof Long) {
+            return (int)Math.floorMod((Long)key, (long)partitions());
+        }
+        return super.partition(key);
+    }
+
+}
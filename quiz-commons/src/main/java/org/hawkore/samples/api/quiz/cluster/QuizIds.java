@@ -0,0 +1,98 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.cluster;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicLong;
+import org.apache.ignite.IgniteAtomicSequence;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.affinity.Affinity;
+import org.apache.ignite.configuration.AtomicConfiguration;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+
+/**
+ * Quiz ids (keys on {@code quizCache}) generator.
+ * <p>
+ * Ids are taken from a cluster wide sequence that reserves blocks of {@link #RESERVE_SIZE} ids per node, so most ids
+ * are generated locally. Ids are unique and increasing per node, but there could be gaps between them.
+ * <p>
+ * An id also encodes the partition of its surveyed email on {@code quizEmailIndex} ({@code sequence * partitions +
+ * partition}), so with {@link QuizAffinityFunction} as {@code quizCache} affinity, a Quiz is stored on the same node
+ * that owns its surveyed email. As the sequence starts from the last id of previous versions, encoded ids are always
+ * greater than existing ones, that are kept as they are (see {@link QuizAffinityFunction} about existing clusters).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class QuizIds {
+
+    /**
+     * The Quiz ids sequence name
+     */
+    public static final String SEQUENCE_NAME = "QUIZ_ID_SEQ";
+    /**
+     * Number of ids reserved per node on each sequence access
+     */
+    public static final int RESERVE_SIZE = 1000;
+    /**
+     * Counter that was used to generate Quiz ids, sequence starts from its value so new ids do not override
+     * existing Quizzes
+     */
+    private static final String LEGACY_COUNTER_NAME = "TOTAL_PROC_QUIZS";
+    private static final String EMAIL_INDEX_NAME = "quizEmailIndex";
+    private static volatile IgniteAtomicSequence sequence;
+
+    private QuizIds() {
+    }
+
+    /**
+     * Next Quiz id, colocated with the surveyed email on {@code quizEmailIndex}.
+     *
+     * @param email
+     *     the surveyed email
+     * @return the next id
+     */
+    public static long next(String email) {
+        Ignite ignite = QuizNode.ignite();
+        if (ignite == null) {
+            throw new IllegalStateException("Ignite node not started yet");
+        }
+        IgniteAtomicSequence seq = sequence;
+        if (seq == null || seq.removed()) {
+            synchronized (QuizIds.class) {
+                seq = sequence;
+                if (seq == null || seq.removed()) {
+                    seq = sequence = create(ignite);
+                }
+            }
+        }
+        Affinity<String> affinity = ignite.affinity(QuizGenerations.name(EMAIL_INDEX_NAME));
+        return seq.incrementAndGet() * affinity.partitions() + affinity.partition(email);
+    }
+
+    private static IgniteAtomicSequence create(Ignite ignite) {
+        AtomicConfiguration cfg = new AtomicConfiguration().setCacheMode(CacheMode.REPLICATED)
+                                      .setAtomicSequenceReserveSize(RESERVE_SIZE);
+        IgniteAtomicSequence seq = ignite.atomicSequence(SEQUENCE_NAME, cfg, 0, false);
+        if (seq == null) {
+            IgniteAtomicLong legacy = ignite.atomicLong(LEGACY_COUNTER_NAME,
+                new AtomicConfiguration().setCacheMode(CacheMode.REPLICATED), 0, true);
+            // initial value is only applied by the node that creates the sequence
+            seq = ignite.atomicSequence(SEQUENCE_NAME, cfg, legacy.get(), true);
+        }
+        return seq;
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.cluster;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.lifecycle.LifecycleEventType;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a reference to the Apache Ignite node started by the Apache Ignite connector for this Mule application.
+ * <p>
+ * Register it into {@code lifecycleBeans} property of Ignite configuration (see ignite-config.xml) so Java
+ * components invoked from Mule flows can use the Ignite API directly.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizNode implements LifecycleBean {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizNode.class);
+    private static volatile Ignite node;
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+
+    /**
+     * The Ignite node of this Mule application.
+     *
+     * @return the ignite node, or {@code null} if node is not started yet
+     */
+    public static Ignite ignite() {
+        return node;
+    }
+
+    /**
+     * On lifecycle event.
+     *
+     * @param evt
+     *     the lifecycle event
+     */
+    @Override
+    public void onLifecycleEvent(LifecycleEventType evt) {
+        switch (evt) {
+            case AFTER_NODE_START:
+                node = ignite;
+                log.info("Ignite node {} attached", ignite.name());
+                break;
+            case BEFORE_NODE_STOP:
+                node = null;
+                log.info("Ignite node {} detached", ignite.name());
+                break;
+            default:
+                break;
+        }
+    }
+
+}
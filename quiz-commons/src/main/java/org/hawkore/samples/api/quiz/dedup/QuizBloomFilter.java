@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.dedup;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter of surveyed emails: no false negatives, false positives with the configured probability
+ * while no more than the expected number of emails are added.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizBloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    /**
+     * Instantiates a new Quiz Bloom filter.
+     *
+     * @param expectedEmails
+     *     the expected number of emails
+     * @param falsePositiveRate
+     *     the false positive probability, between 0 and 1
+     */
+    public QuizBloomFilter(long expectedEmails, double falsePositiveRate) {
+        long n = Math.max(1, expectedEmails);
+        long m = (long)Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray((int)Math.max(1, (m + 63) / 64));
+        this.bits = words.length() * 64L;
+        this.hashes = (int)Math.max(1, Math.round((double)bits / n * Math.log(2)));
+    }
+
+    /**
+     * Adds the given email.
+     *
+     * @param email
+     *     the email
+     */
+    public void put(String email) {
+        long h1 = hash1(email);
+        long h2 = hash2(email);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            int word = (int)(bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    /**
+     * Whether the given email might have been added.
+     *
+     * @param email
+     *     the email
+     * @return false if email was never added, true if it probably was
+     */
+    public boolean mightContain(String email) {
+        long h1 = hash1(email);
+        long h2 = hash2(email);
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bits);
+            if ((words.get((int)(bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes all emails.
+     */
+    public void clear() {
+        for (int i = 0; i < words.length(); i++) {
+            words.set(i, 0);
+        }
+    }
+
+    private static long hash1(String email) {
+        return mix(email.hashCode());
+    }
+
+    /*
+     * FNV-1a, independent from String hash code. Odd, so probes do not cycle on a subset of bits
+     */
+    private static long hash2(String email) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < email.length(); i++) {
+            h ^= email.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h) | 1;
+    }
+
+    /*
+     * MurmurHash3 64 bits finalizer
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
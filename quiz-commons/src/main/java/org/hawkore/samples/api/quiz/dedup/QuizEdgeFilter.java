@@ -0,0 +1,332 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.dedup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import javax.cache.Cache;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.event.CacheEntryEvent;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.query.ContinuousQueryWithTransformer;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.lang.IgniteClosure;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.lifecycle.LifecycleEventType;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Duplicated Quizzes filter for API nodes, so obvious repeats (e.g. retrying clients) do not reach workers.
+ * <p>
+ * Surveyed emails dispatched by this node are kept for {@code recentTtl} milliseconds in a local bounded cache (up to
+ * {@code recentCapacity} emails), any Quiz for them is a duplicate.
+ * <p>
+ * Optionally ({@code bloomEnabled}), a local Bloom filter of all emails on {@code quizEmailIndex} is kept up to date
+ * with a continuous query, so emails indexed by workers (from any API node) are also detected: when Bloom filter
+ * reports an email as probably indexed, it is confirmed with an exact lookup on {@code quizEmailIndex}, so there are
+ * no false duplicates. New emails, the common case, are not looked up.
+ * <p>
+ * Known emails are forgotten once the current Quiz generation changes (see {@link QuizGenerations}), and Bloom filter
+ * is loaded again from {@code quizEmailIndex} of the new generation.
+ * <p>
+ * Register it into {@code lifecycleBeans} property of Ignite configuration (see ignite-config.xml).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizEdgeFilter implements LifecycleBean {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizEdgeFilter.class);
+    private static final long CACHE_POLL = 1000;
+    private static volatile QuizEdgeFilter active;
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+    private int recentCapacity = 10000;
+    private long recentTtl = 60000;
+    private boolean bloomEnabled = false;
+    private long expectedEmails = 1000000;
+    private double falsePositiveRate = 0.01;
+    private Map<String, Long> recent;
+    private QuizBloomFilter bloom;
+    private volatile boolean bloomReady;
+    private volatile boolean running;
+    private volatile QueryCursor<Cache.Entry<String, Long>> indexUpdates;
+    private final LongConsumer onGeneration = this::onGeneration;
+
+    /**
+     * Whether a Quiz for the given surveyed email is a known duplicate.
+     *
+     * @param email
+     *     the surveyed email
+     * @return true if it is a duplicate, false if it should be dispatched (it could still be a duplicate detected
+     *     by workers)
+     */
+    public static boolean isDuplicate(String email) {
+        QuizEdgeFilter current = active;
+        if (current == null || email == null) {
+            return false;
+        }
+        if (current.recentlySeen(email)) {
+            return true;
+        }
+        if (current.bloomReady && current.bloom.mightContain(email) && QuizEmailIndex.exists(email)) {
+            current.seen(email, System.currentTimeMillis());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records the given surveyed email as dispatched by this node.
+     *
+     * @param email
+     *     the surveyed email
+     */
+    public static void seen(String email) {
+        QuizEdgeFilter current = active;
+        if (current != null && email != null) {
+            current.seen(email, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Forgets all known emails on this node, for example, once all Quizzes are deleted.
+     */
+    public static void clear() {
+        QuizEdgeFilter current = active;
+        if (current != null) {
+            synchronized (current.recent) {
+                current.recent.clear();
+            }
+            if (current.bloom != null) {
+                current.bloom.clear();
+            }
+        }
+    }
+
+    /**
+     * On lifecycle event.
+     *
+     * @param evt
+     *     the lifecycle event
+     */
+    @Override
+    public void onLifecycleEvent(LifecycleEventType evt) {
+        switch (evt) {
+            case AFTER_NODE_START:
+                recent = new LinkedHashMap<String, Long>(16, 0.75f, false) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                        return size() > recentCapacity;
+                    }
+                };
+                running = true;
+                QuizGenerations.addListener(onGeneration);
+                if (bloomEnabled) {
+                    bloom = new QuizBloomFilter(expectedEmails, falsePositiveRate);
+                    try {
+                        startFollowIndex(QuizGenerations.current());
+                    } catch (IllegalStateException e) {
+                        // followed once generation is known (see onGeneration)
+                        log.warn("Quiz edge filter will follow index later: {}", e.getMessage());
+                    }
+                }
+                active = this;
+                log.info("Quiz edge filter started, {} recent emails for {} ms, Bloom filter {}", recentCapacity,
+                    recentTtl, bloomEnabled ? "enabled" : "disabled");
+                break;
+            case BEFORE_NODE_STOP:
+                active = null;
+                running = false;
+                QuizGenerations.removeListener(onGeneration);
+                stopFollowIndex();
+                log.info("Quiz edge filter stopped");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private boolean recentlySeen(String email) {
+        Long seenAt;
+        synchronized (recent) {
+            seenAt = recent.get(email);
+        }
+        return seenAt != null && System.currentTimeMillis() - seenAt <= recentTtl;
+    }
+
+    private void seen(String email, long now) {
+        synchronized (recent) {
+            // re-insert, so eldest entry is always the oldest one
+            recent.remove(email);
+            recent.put(email, now);
+        }
+    }
+
+    /*
+     * All Quizzes were deleted, so known emails are no longer duplicates
+     */
+    private void onGeneration(long generation) {
+        if (bloomEnabled) {
+            bloomReady = false;
+            stopFollowIndex();
+        }
+        clear();
+        if (bloomEnabled && running) {
+            startFollowIndex(generation);
+        }
+    }
+
+    private void startFollowIndex(long generation) {
+        Thread loader = new Thread(() -> followIndex(generation), "quiz-edge-filter-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void stopFollowIndex() {
+        QueryCursor<?> cursor = indexUpdates;
+        indexUpdates = null;
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+
+    /*
+     * Loads indexed emails into Bloom filter and keeps it up to date with emails indexed later, until generation
+     * changes.
+     */
+    private void followIndex(long generation) {
+        String indexName = QuizGenerations.name(QuizEmailIndex.CACHE_NAME, generation);
+        try {
+            IgniteCache<String, Long> index = ignite.cache(indexName);
+            // index cache is started by Apache Ignite connector
+            while (index == null && running && QuizGenerations.current() == generation) {
+                TimeUnit.MILLISECONDS.sleep(CACHE_POLL);
+                index = ignite.cache(indexName);
+            }
+            if (index == null || QuizGenerations.current() != generation) {
+                return;
+            }
+            ContinuousQueryWithTransformer<String, Long, String> query = new ContinuousQueryWithTransformer<>();
+            query.setInitialQuery(new ScanQuery<>());
+            query.setRemoteTransformerFactory(new FactoryBuilder.SingletonFactory<>(new KeyOnly()));
+            query.setLocalListener(keys -> keys.forEach(this::index));
+            QueryCursor<Cache.Entry<String, Long>> cursor = index.query(query);
+            indexUpdates = cursor;
+            if (QuizGenerations.current() != generation) {
+                // generation changed meanwhile, a new loader follows the new index
+                cursor.close();
+                return;
+            }
+            long count = 0;
+            for (Cache.Entry<String, Long> entry : cursor) {
+                if (index(entry.getKey())) {
+                    count++;
+                }
+            }
+            bloomReady = QuizGenerations.current() == generation;
+            log.info("Quiz edge filter Bloom filter loaded with {} indexed emails", count);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Unable to load Quiz edge filter Bloom filter, only recent emails will be filtered: {}",
+                e.getMessage());
+        }
+    }
+
+    private boolean index(String email) {
+        if (QuizEmailIndex.POPULATED_KEY.equals(email)) {
+            return false;
+        }
+        bloom.put(email);
+        return true;
+    }
+
+    /**
+     * Sets the max number of recent emails kept by this node.
+     *
+     * @param recentCapacity
+     *     the recent capacity, defaults to 10000
+     */
+    public void setRecentCapacity(int recentCapacity) {
+        this.recentCapacity = recentCapacity;
+    }
+
+    /**
+     * Sets the time a recent email is kept by this node.
+     *
+     * @param recentTtl
+     *     the recent time to live in milliseconds, defaults to 60000
+     */
+    public void setRecentTtl(long recentTtl) {
+        this.recentTtl = recentTtl;
+    }
+
+    /**
+     * Sets whether to keep a Bloom filter of all emails on {@code quizEmailIndex}.
+     *
+     * @param bloomEnabled
+     *     the Bloom filter enabled flag, defaults to false
+     */
+    public void setBloomEnabled(boolean bloomEnabled) {
+        this.bloomEnabled = bloomEnabled;
+    }
+
+    /**
+     * Sets the expected number of surveyed emails, to size the Bloom filter.
+     *
+     * @param expectedEmails
+     *     the expected emails, defaults to 1000000 (~1.2 MB with default false positive rate)
+     */
+    public void setExpectedEmails(long expectedEmails) {
+        this.expectedEmails = expectedEmails;
+    }
+
+    /**
+     * Sets the Bloom filter false positive probability, every false positive costs an exact lookup.
+     *
+     * @param falsePositiveRate
+     *     the false positive rate, defaults to 0.01
+     */
+    public void setFalsePositiveRate(double falsePositiveRate) {
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    /**
+     * Sends only keys (emails) of updated index entries to API nodes.
+     */
+    private static class KeyOnly implements IgniteClosure<CacheEntryEvent<? extends String, ? extends Long>, String> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public String apply(CacheEntryEvent<? extends String, ? extends Long> event) {
+            return event.getKey();
+        }
+
+    }
+
+}
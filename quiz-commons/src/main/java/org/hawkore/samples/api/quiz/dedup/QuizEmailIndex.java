@@ -0,0 +1,192 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.dedup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteDataStreamer;
+import org.apache.ignite.cache.query.FieldsQueryCursor;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.hawkore.samples.api.quiz.cluster.QuizNode;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Distributed index of surveyed emails (email as key, Quiz id as value), so duplicated Quizzes are detected with an
+ * exact key lookup instead of a SQL query over {@code quizCache}, and one Quiz per surveyed can be ensured without a
+ * cluster wide lock: only Quizzes with the same email compete for the same key.
+ * <p>
+ * Index is lazily populated from existing Quizzes on {@code quizCache} the first time it is used on each Quiz
+ * generation (see {@link QuizGenerations}).
+ * <p>
+ * A claimed email whose Quiz has not been recorded yet holds the claim time as a negative value. A claim older than
+ * {@link #CLAIM_TIMEOUT} was left by a worker that died before recording its Quiz, so it is reclaimed by the next Quiz
+ * for the same email. Claims are owned by the node that took them: only that node can release them, and only until the
+ * Quiz id is recorded.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class QuizEmailIndex {
+
+    /**
+     * The email index cache name, see ignite-config.xml
+     */
+    public static final String CACHE_NAME = "quizEmailIndex";
+    /**
+     * Max time in milliseconds a claimed email waits for its Quiz to be recorded, before it can be claimed again
+     */
+    public static final long CLAIM_TIMEOUT = 60000;
+    /**
+     * Reserved key (not a valid email) to flag the index as populated
+     */
+    static final String POPULATED_KEY = "#populated";
+    private static final Logger log = LoggerFactory.getLogger(QuizEmailIndex.class);
+    private static final String QUIZ_CACHE_NAME = "quizCache";
+    private static final Object populateMutex = new Object();
+    /**
+     * Claims taken by this node and not recorded yet, email as key and claim value as value
+     */
+    private static final Map<String, Long> claims = new ConcurrentHashMap<>();
+    /**
+     * Once populated, index is kept up to date by workers (and replaced with quizCache on next generation), so there is
+     * no need to check it again on this node for the same generation
+     */
+    private static volatile long populatedGeneration = -1;
+
+    private QuizEmailIndex() {
+    }
+
+    /**
+     * Whether there is already a Quiz (or a claim not timed out) for the given surveyed email.
+     *
+     * @param email
+     *     the surveyed email
+     * @return true if email is indexed
+     */
+    public static boolean exists(String email) {
+        Long value = index().get(email);
+        return value != null && !stale(value, System.currentTimeMillis());
+    }
+
+    /**
+     * Atomically claims the given surveyed email, a timed out claim is claimed again.
+     *
+     * @param email
+     *     the surveyed email
+     * @return true if email was not claimed yet, so the Quiz should be processed. Otherwise, the Quiz is a duplicate
+     */
+    public static boolean claim(String email) {
+        IgniteCache<String, Long> index = index();
+        long now = System.currentTimeMillis();
+        Long claim = -now;
+        Long value = index.getAndPutIfAbsent(email, claim);
+        while (value != null) {
+            if (!stale(value, now)) {
+                return false;
+            }
+            // claim left by a dead worker
+            if (index.replace(email, value, claim)) {
+                log.warn("Claim of {} timed out, claimed again", email);
+                break;
+            }
+            value = index.getAndPutIfAbsent(email, claim);
+        }
+        claims.put(email, claim);
+        return true;
+    }
+
+    /**
+     * Records the id of the stored Quiz for the given surveyed email, its claim can not be released anymore.
+     *
+     * @param email
+     *     the surveyed email
+     * @param quizId
+     *     the Quiz id (key on {@code quizCache})
+     */
+    public static void record(String email, long quizId) {
+        index().put(email, quizId);
+        claims.remove(email);
+    }
+
+    /**
+     * Releases the claim of this node on the given surveyed email, if the Quiz could not be processed. Nothing is done
+     * if the Quiz id was already recorded, or if the claim was taken by another node.
+     *
+     * @param email
+     *     the surveyed email
+     */
+    public static void release(String email) {
+        Long claim = claims.remove(email);
+        if (claim != null) {
+            index().remove(email, claim);
+        }
+    }
+
+    /*
+     * Whether the given index value is a timed out claim (Quiz ids are positive)
+     */
+    private static boolean stale(long value, long now) {
+        return value <= 0 && now + value > CLAIM_TIMEOUT;
+    }
+
+    private static IgniteCache<String, Long> index() {
+        Ignite ignite = QuizNode.ignite();
+        if (ignite == null) {
+            throw new IllegalStateException("Ignite node not started yet");
+        }
+        long generation = QuizGenerations.current();
+        IgniteCache<String, Long> index = ignite.cache(QuizGenerations.name(CACHE_NAME, generation));
+        if (populatedGeneration != generation) {
+            synchronized (populateMutex) {
+                if (populatedGeneration != generation) {
+                    if (!index.containsKey(POPULATED_KEY)) {
+                        populate(ignite, generation);
+                        index.put(POPULATED_KEY, System.currentTimeMillis());
+                    }
+                    populatedGeneration = generation;
+                }
+            }
+        }
+        return index;
+    }
+
+    /*
+     * Loads emails of already stored Quizzes into the index, existing keys are not overwritten.
+     */
+    private static void populate(Ignite ignite, long generation) {
+        String indexName = QuizGenerations.name(CACHE_NAME, generation);
+        String quizCacheName = QuizGenerations.name(QUIZ_CACHE_NAME, generation);
+        log.info("Populating {} from {}", indexName, quizCacheName);
+        long count = 0;
+        SqlFieldsQuery query = new SqlFieldsQuery(String.format("select email, _key from \"%s\".quiz", quizCacheName))
+                                   .setLazy(true);
+        try (IgniteDataStreamer<String, Long> streamer = ignite.dataStreamer(indexName);
+             FieldsQueryCursor<List<?>> cursor = ignite.cache(quizCacheName).query(query)) {
+            streamer.allowOverwrite(false);
+            for (List<?> row : cursor) {
+                streamer.addData((String)row.get(0), (Long)row.get(1));
+                count++;
+            }
+        }
+        log.info("Populated {} with {} emails", indexName, count);
+    }
+
+}
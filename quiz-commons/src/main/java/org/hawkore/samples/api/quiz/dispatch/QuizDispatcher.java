@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.dispatch;
+
+import org.apache.ignite.Ignite;
+import org.hawkore.samples.api.quiz.cluster.QuizNode;
+import org.hawkore.samples.api.quiz.dedup.QuizEmailIndex;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+
+/**
+ * Dispatches Quizzes to be processed on the server node that owns the surveyed email (affinity colocation), instead
+ * of publishing them to the Quizzes queue for workers.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class QuizDispatcher {
+
+    private QuizDispatcher() {
+    }
+
+    /**
+     * Processes the given Quiz on the primary node for its surveyed email on {@code quizEmailIndex} cache.
+     *
+     * @param quiz
+     *     the received Quiz
+     * @return true if Quiz was stored, false if it is a duplicate
+     */
+    public static boolean dispatch(Quiz quiz) {
+        Ignite ignite = QuizNode.ignite();
+        if (ignite == null) {
+            throw new IllegalStateException("Ignite node not started yet");
+        }
+        return ignite.compute().affinityCall(QuizGenerations.name(QuizEmailIndex.CACHE_NAME), quiz.getEmail(),
+            new QuizProcessor(quiz));
+    }
+
+}
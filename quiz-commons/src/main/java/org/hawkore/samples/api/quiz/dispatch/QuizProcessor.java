@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.dispatch;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.hawkore.samples.api.quiz.cluster.QuizIds;
+import org.hawkore.samples.api.quiz.dedup.QuizEmailIndex;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+import org.hawkore.samples.api.quiz.metrics.QuizLatency;
+import org.hawkore.samples.api.quiz.stats.QuizCounters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes a Quiz on the primary node of its surveyed email on {@code quizEmailIndex} cache: ensures one Quiz per
+ * surveyed (local claim), stores the Quiz and updates global stats.
+ * <p>
+ * Quiz id is colocated with the surveyed email (see {@link QuizIds}), so the Quiz is stored on this same node.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizProcessor implements IgniteCallable<Boolean> {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(QuizProcessor.class);
+    private static final String QUIZ_CACHE_NAME = "quizCache";
+    private final Quiz quiz;
+
+    @IgniteInstanceResource
+    private transient Ignite ignite;
+
+    /**
+     * Instantiates a new Quiz processor.
+     *
+     * @param quiz
+     *     the received Quiz
+     */
+    public QuizProcessor(Quiz quiz) {
+        this.quiz = quiz;
+    }
+
+    /**
+     * Process Quiz.
+     *
+     * @return true if Quiz was stored, false if it is a duplicate
+     */
+    @Override
+    public Boolean call() {
+        return process(ignite, quiz);
+    }
+
+    /**
+     * Processes a Quiz on the given node, as done by affinity dispatch jobs on server nodes (see {@link #call()}).
+     *
+     * @param ignite
+     *     the local Ignite node
+     * @param quiz
+     *     the received Quiz
+     * @return true if Quiz was stored, false if it is a duplicate
+     */
+    public static boolean process(Ignite ignite, Quiz quiz) {
+        if (!QuizEmailIndex.claim(quiz.getEmail())) {
+            long duplicated = QuizCounters.increment("TOTAL_DUPLICATED_QUIZS");
+            log.info("Seems that same user send more than one Quiz response!!. Current global duplicated Quiz "
+                         + "(approximate): {}", duplicated);
+            return false;
+        }
+        try {
+            long id = QuizIds.next(quiz.getEmail());
+            quiz.setPts(System.currentTimeMillis());
+            quiz.setWorkerIp(localIp());
+            ignite.cache(QuizGenerations.name(QUIZ_CACHE_NAME)).put(id, quiz);
+            QuizEmailIndex.record(quiz.getEmail(), id);
+            QuizCounters.increment(quiz.isYes() ? "TOTAL_YES" : quiz.isNo() ? "TOTAL_NO" : "TOTAL_NA");
+            long processed = QuizCounters.increment("TOTAL_PROC_QUIZS");
+            log.info("Total processed QUIZZES (approximate): {}", processed);
+            QuizLatency.record(quiz);
+            return true;
+        } catch (RuntimeException e) {
+            QuizEmailIndex.release(quiz.getEmail());
+            throw e;
+        }
+    }
+
+    private static String localIp() {
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            return "";
+        }
+    }
+
+}
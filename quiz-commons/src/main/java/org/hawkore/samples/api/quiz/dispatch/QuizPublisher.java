@@ -0,0 +1,392 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.dispatch;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteQueue;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.CollectionConfiguration;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.lifecycle.LifecycleEventType;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes Quizzes into a distributed queue in batches: Quizzes published concurrently are buffered and added to
+ * the queue with a single {@link IgniteQueue#addAll} call, so each Quiz does not pay for its own transactional queue
+ * insert.
+ * <p>
+ * A batch is published as soon as it has {@code batchSize} Quizzes, or {@code maxDelay} milliseconds after its first
+ * Quiz was buffered. Buffered Quizzes are published before the Ignite node stops, if the publisher thread ends
+ * unexpectedly they are rejected instead. A Quiz rejected by a publish timeout, or whose future was completed by the
+ * caller, is removed from its batch, unless its batch is already being added to the queue, then its real outcome is
+ * awaited.
+ * <p>
+ * Quizzes can be published into any queue (e.g. shard queues, see {@link
+ * org.hawkore.samples.api.quiz.shard.QuizShards}), the Quizzes of a batch are added to each queue in the same order
+ * they were published.
+ * <p>
+ * Register it into {@code lifecycleBeans} property of Ignite configuration (see ignite-config.xml).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizPublisher implements LifecycleBean {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizPublisher.class);
+    private static final long IDLE_POLL = 100;
+    private static volatile QuizPublisher active;
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+    private String queueName = "QUIZS_QUEUE";
+    private int bufferCapacity = 10000;
+    private int batchSize = 256;
+    private long maxDelay = 5;
+    private long publishTimeout = 10000;
+    private CollectionConfiguration collectionConfiguration = new CollectionConfiguration()
+                                                                  .setCacheMode(CacheMode.PARTITIONED)
+                                                                  .setAtomicityMode(CacheAtomicityMode.TRANSACTIONAL)
+                                                                  .setBackups(1);
+    private BlockingQueue<Pending> buffer;
+    private final ConcurrentMap<String, IgniteQueue<Object>> queues = new ConcurrentHashMap<>();
+    private Thread publisher;
+    private volatile boolean running;
+
+    /**
+     * Buffers the given Quiz to be published into the default queue.
+     *
+     * @param quiz
+     *     the Quiz
+     * @return a future completed once the Quiz is added to the queue, or completed exceptionally if it could not be
+     *     published (buffer full, queue failure...)
+     */
+    public static CompletableFuture<Void> submit(Object quiz) {
+        return submit(null, quiz);
+    }
+
+    /**
+     * Buffers the given Quiz to be published into the given queue.
+     *
+     * @param queueName
+     *     the queue name, null for the default queue
+     * @param quiz
+     *     the Quiz
+     * @return a future completed once the Quiz is added to the queue, or completed exceptionally if it could not be
+     *     published (buffer full, queue failure...)
+     */
+    public static CompletableFuture<Void> submit(String queueName, Object quiz) {
+        return offer(active, queueName, quiz).published;
+    }
+
+    /**
+     * Publishes the given Quiz into the default queue, waiting for its batch to be added to the queue.
+     *
+     * @param quiz
+     *     the Quiz
+     * @throws RuntimeException
+     *     if the Quiz could not be published
+     */
+    public static void publish(Object quiz) {
+        publish(null, quiz);
+    }
+
+    /**
+     * Publishes the given Quiz into the given queue, waiting up to {@code publishTimeout} milliseconds for its batch
+     * to be added to the queue.
+     *
+     * @param queueName
+     *     the queue name, null for the default queue
+     * @param quiz
+     *     the Quiz
+     * @throws RuntimeException
+     *     if the Quiz could not be published, {@link RejectedExecutionException} if it was not published in time
+     */
+    public static void publish(String queueName, Object quiz) {
+        QuizPublisher current = active;
+        long timeout = current == null ? 0 : current.publishTimeout;
+        Pending pending = offer(current, queueName, quiz);
+        try {
+            try {
+                pending.published.get(timeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if (pending.cancel()) {
+                    throw new RejectedExecutionException("Quiz not published within " + timeout + " ms");
+                }
+                // its batch is being added to the queue, reports its real outcome
+                pending.published.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (pending.cancel()) {
+                throw new RejectedExecutionException("Interrupted while publishing Quiz");
+            }
+            throw new IllegalStateException("Interrupted while Quiz was being added to the queue");
+        }
+    }
+
+    private static Pending offer(QuizPublisher current, String queueName, Object quiz) {
+        Pending pending = new Pending(queueName == null && current != null ? current.queueName : queueName, quiz);
+        if (current == null) {
+            pending.published.completeExceptionally(new IllegalStateException("Quiz publisher not started yet"));
+        } else if (!current.buffer.offer(pending)) {
+            pending.published.completeExceptionally(new RejectedExecutionException("Quiz publisher buffer is full"));
+        }
+        return pending;
+    }
+
+    /**
+     * On lifecycle event.
+     *
+     * @param evt
+     *     the lifecycle event
+     */
+    @Override
+    public void onLifecycleEvent(LifecycleEventType evt) {
+        switch (evt) {
+            case AFTER_NODE_START:
+                queue(queueName);
+                buffer = new ArrayBlockingQueue<>(bufferCapacity);
+                running = true;
+                publisher = new Thread(this::publishLoop, "quiz-publisher");
+                publisher.setDaemon(true);
+                publisher.start();
+                active = this;
+                log.info("Quiz publisher started for {}, batch size {}, max delay {} ms", queueName, batchSize,
+                    maxDelay);
+                break;
+            case BEFORE_NODE_STOP:
+                active = null;
+                if (publisher != null) {
+                    running = false;
+                    try {
+                        publisher.join(TimeUnit.SECONDS.toMillis(10));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    // publishes buffered Quizzes
+                    List<Pending> batch = new ArrayList<>();
+                    while (buffer.drainTo(batch, batchSize) > 0) {
+                        flush(batch);
+                    }
+                    log.info("Quiz publisher stopped");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void publishLoop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        try {
+            while (running) {
+                try {
+                    Pending first = buffer.poll(IDLE_POLL, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelay);
+                    while (batch.size() < batchSize) {
+                        // already buffered Quizzes do not wait
+                        if (buffer.drainTo(batch, batchSize - batch.size()) > 0) {
+                            continue;
+                        }
+                        Pending next = buffer.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    flush(batch);
+                    break;
+                }
+                flush(batch);
+            }
+        } finally {
+            if (running) {
+                // ended unexpectedly, nothing else would be published
+                running = false;
+                active = null;
+                buffer.drainTo(batch);
+                if (!batch.isEmpty()) {
+                    log.warn("Quiz publisher ended unexpectedly, {} buffered Quizzes rejected", batch.size());
+                    RuntimeException stopped = new RejectedExecutionException("Quiz publisher stopped");
+                    batch.forEach(pending -> pending.published.completeExceptionally(stopped));
+                }
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<String, List<Pending>> byQueue = new LinkedHashMap<>();
+        for (Pending pending : batch) {
+            byQueue.computeIfAbsent(pending.queueName, name -> new ArrayList<>()).add(pending);
+        }
+        batch.clear();
+        byQueue.forEach(this::flush);
+    }
+
+    private void flush(String name, List<Pending> pendings) {
+        List<Pending> batch = new ArrayList<>(pendings.size());
+        List<Object> quizzes = new ArrayList<>(pendings.size());
+        for (Pending pending : pendings) {
+            // cancelled Quizzes were already rejected to the caller
+            if (pending.claim()) {
+                batch.add(pending);
+                quizzes.add(pending.quiz);
+            }
+        }
+        if (quizzes.isEmpty()) {
+            return;
+        }
+        try {
+            queue(name).addAll(quizzes);
+            batch.forEach(pending -> pending.published.complete(null));
+            if (log.isDebugEnabled()) {
+                log.debug("Published {} Quizzes into {}", quizzes.size(), name);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to publish {} Quizzes into {}: {}", quizzes.size(), name, e.getMessage());
+            batch.forEach(pending -> pending.published.completeExceptionally(e));
+        }
+    }
+
+    private IgniteQueue<Object> queue(String name) {
+        return queues.computeIfAbsent(name, n -> ignite.queue(n, 0, collectionConfiguration));
+    }
+
+    /**
+     * Sets the default queue to publish Quizzes into.
+     *
+     * @param queueName
+     *     the queue name, defaults to QUIZS_QUEUE
+     */
+    public void setQueueName(String queueName) {
+        this.queueName = queueName;
+    }
+
+    /**
+     * Sets the max number of Quizzes waiting to be published, further Quizzes are rejected.
+     *
+     * @param bufferCapacity
+     *     the buffer capacity, defaults to 10000
+     */
+    public void setBufferCapacity(int bufferCapacity) {
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    /**
+     * Sets the max number of Quizzes added to the queue at once.
+     *
+     * @param batchSize
+     *     the batch size, defaults to 256
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the max time a Quiz waits for its batch to be filled before being published.
+     *
+     * @param maxDelay
+     *     the max delay in milliseconds, defaults to 5
+     */
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+    }
+
+    /**
+     * Sets the max time {@link #publish(String, Object)} waits for a Quiz to be added to the queue, after which it is
+     * rejected.
+     *
+     * @param publishTimeout
+     *     the publish timeout in milliseconds, defaults to 10000
+     */
+    public void setPublishTimeout(long publishTimeout) {
+        this.publishTimeout = publishTimeout;
+    }
+
+    /**
+     * Sets the configuration of the queue, must match the one used by Apache Ignite connector (see global.xml).
+     *
+     * @param collectionConfiguration
+     *     the collection configuration, defaults to PARTITIONED, TRANSACTIONAL with 1 backup
+     */
+    public void setCollectionConfiguration(CollectionConfiguration collectionConfiguration) {
+        this.collectionConfiguration = collectionConfiguration;
+    }
+
+    private static class Pending {
+
+        private final String queueName;
+        private final Object quiz;
+        private final CompletableFuture<Void> published = new CompletableFuture<>();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Pending(String queueName, Object quiz) {
+            this.queueName = queueName;
+            this.quiz = quiz;
+        }
+
+        /*
+         * Claimed by the publisher to be added to the queue, false if it was cancelled or completed before
+         */
+        private boolean claim() {
+            return claimed.compareAndSet(false, true) && !published.isDone();
+        }
+
+        /*
+         * Rejects it if it was not claimed by the publisher yet
+         */
+        private boolean cancel() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            published.completeExceptionally(new RejectedExecutionException("Quiz publication cancelled"));
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.entities;
+
+import java.io.Serializable;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ignite.binary.BinaryObjectException;
+import org.apache.ignite.binary.BinaryReader;
+import org.apache.ignite.binary.BinaryWriter;
+import org.apache.ignite.binary.Binarylizable;
+import org.apache.ignite.cache.query.annotations.QuerySqlField;
+
+/**
+ * Quiz, conveniently annotated fields for SQL queries (distributed database)
+ * <p>
+ * Binary layout is explicit (see {@link #writeBinary(BinaryWriter)}), without reflection: {@code email}, {@code
+ * answer}, {@code qts}, {@code pts}, {@code apiIp} and {@code workerIp}, where YES, NO and Non Answered responses are
+ * packed as bits into the single byte {@code answer} field (SQL column), so a Quiz takes fewer bytes on queues,
+ * off-heap pages and WAL. Use {@code bitand(answer, 1) <> 0} in SQL queries for YES responses.
+ * <p>
+ * Timestamps ({@code qts} and {@code pts}) are in milliseconds.
+ * <p>
+ * Quizzes stored by previous versions ({@code yes}, {@code no} and {@code na} boolean fields, without {@code answer},
+ * and timestamps in seconds) are still readable, {@link #LAYOUT} bit tells them apart and their timestamps are read in
+ * milliseconds. They are rewritten with the packed layout when migrated to a new Quiz generation (see {@link
+ * org.hawkore.samples.api.quiz.generation.QuizMigration}).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class Quiz implements Serializable, Binarylizable {
+
+    /**
+     * YES response bit on {@code answer} field
+     */
+    public static final byte YES = 1;
+    /**
+     * NO response bit on {@code answer} field
+     */
+    public static final byte NO = 1 << 1;
+    /**
+     * Non Answered response bit on {@code answer} field
+     */
+    public static final byte NA = 1 << 2;
+    /**
+     * Packed layout bit on {@code answer} field, always set when written, so {@code answer} is never 0 but on Quizzes
+     * stored by previous versions
+     */
+    public static final byte LAYOUT = 1 << 3;
+    private static final long serialVersionUID = 2L;
+    /**
+     * Surveyed email
+     */
+    @QuerySqlField(index = true, inlineSize = 200)
+    private String email;
+    /**
+     * Responses, bit packed: {@link #YES}, {@link #NO} and {@link #NA}, plus {@link #LAYOUT} bit on SQL column
+     */
+    @QuerySqlField(index = true)
+    private byte answer;
+    /**
+     * Quiz creation timestamp, milliseconds
+     */
+    @QuerySqlField(index = true)
+    private long qts;
+    /**
+     * Quiz process timestamp, milliseconds
+     */
+    @QuerySqlField(index = true)
+    private long pts;
+    /**
+     * API node IP that received Quiz
+     */
+    @QuerySqlField(index = true)
+    private String apiIp;
+    /**
+     * Worker node IP that processed Quiz
+     */
+    @QuerySqlField(index = true)
+    private String workerIp;
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public byte getAnswer() {
+        return answer;
+    }
+
+    public void setAnswer(byte answer) {
+        this.answer = (byte)(answer & ~LAYOUT);
+    }
+
+    public boolean isYes() {
+        return isSet(YES);
+    }
+
+    public void setYes(boolean yes) {
+        set(YES, yes);
+    }
+
+    public boolean isNo() {
+        return isSet(NO);
+    }
+
+    public void setNo(boolean no) {
+        set(NO, no);
+    }
+
+    public boolean isNa() {
+        return isSet(NA);
+    }
+
+    public void setNa(boolean na) {
+        set(NA, na);
+    }
+
+    public long getQts() {
+        return qts;
+    }
+
+    public void setQts(long qts) {
+        this.qts = qts;
+    }
+
+    public long getPts() {
+        return pts;
+    }
+
+    public void setPts(long pts) {
+        this.pts = pts;
+    }
+
+    public String getWorkerIp() {
+        return workerIp;
+    }
+
+    public void setWorkerIp(String workerIp) {
+        this.workerIp = workerIp;
+    }
+
+    public String getApiIp() {
+        return apiIp;
+    }
+
+    public void setApiIp(String apiIp) {
+        this.apiIp = apiIp;
+    }
+
+    private boolean isSet(byte bit) {
+        return (answer & bit) != 0;
+    }
+
+    private void set(byte bit, boolean value) {
+        answer = (byte)(value ? answer | bit : answer & ~bit);
+    }
+
+    /**
+     * Writes Quiz to the binary writer.
+     *
+     * @param writer
+     *     the binary writer
+     * @throws BinaryObjectException
+     *     the binary object exception
+     */
+    @Override
+    public void writeBinary(BinaryWriter writer) throws BinaryObjectException {
+        writer.writeString("email", email);
+        writer.writeByte("answer", (byte)(answer | LAYOUT));
+        writer.writeLong("qts", qts);
+        writer.writeLong("pts", pts);
+        writer.writeString("apiIp", apiIp);
+        writer.writeString("workerIp", workerIp);
+    }
+
+    /**
+     * Reads Quiz from the binary reader.
+     *
+     * @param reader
+     *     the binary reader
+     * @throws BinaryObjectException
+     *     the binary object exception
+     */
+    @Override
+    public void readBinary(BinaryReader reader) throws BinaryObjectException {
+        email = reader.readString("email");
+        byte packed = reader.readByte("answer");
+        qts = reader.readLong("qts");
+        pts = reader.readLong("pts");
+        if ((packed & LAYOUT) != 0) {
+            answer = (byte)(packed & ~LAYOUT);
+        } else {
+            // stored by a previous version, with timestamps in seconds
+            answer = 0;
+            setYes(reader.readBoolean("yes"));
+            setNo(reader.readBoolean("no"));
+            setNa(reader.readBoolean("na"));
+            qts = TimeUnit.SECONDS.toMillis(qts);
+            pts = TimeUnit.SECONDS.toMillis(pts);
+        }
+        apiIp = reader.readString("apiIp");
+        workerIp = reader.readString("workerIp");
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", Quiz.class.getSimpleName() + "[", "]").add("email='" + email + "'")
+                   .add("yes=" + isYes()).add("no=" + isNo()).add("na=" + isNa()).add("qts=" + qts)
+                   .add("pts=" + pts).add("apiIp='" + apiIp + "'").add("workerIp='" + workerIp + "'").toString();
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.export;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.ignite.cache.query.QueryCursor;
+
+/**
+ * NDJSON stream of Quizzes, each row of the given cursor is encoded as a JSON line only when previous one has been
+ * read, so only one Quiz is held in memory at a time (in addition to the cursor page).
+ * <p>
+ * Rows must be (id, email, yes, no, na, qts, pts, apiIp, workerIp), see {@link QuizExporter#EXPORT_QUERY}.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizExportStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+    private final QueryCursor<List<?>> cursor;
+    private final Iterator<List<?>> rows;
+    private final StringBuilder line = new StringBuilder(256);
+    private byte[] buffer = EMPTY;
+    private int position;
+    private boolean closed;
+
+    /**
+     * Instantiates a new Quiz export stream.
+     *
+     * @param cursor
+     *     the Quizzes cursor, closed when this stream is closed
+     */
+    public QuizExportStream(QueryCursor<List<?>> cursor) {
+        this.cursor = cursor;
+        this.rows = cursor.iterator();
+    }
+
+    @Override
+    public int read() {
+        if (!fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        int read = 0;
+        while (read < len && fill()) {
+            int n = Math.min(len - read, buffer.length - position);
+            System.arraycopy(buffer, position, b, off + read, n);
+            position += n;
+            read += n;
+        }
+        return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public int available() {
+        return buffer.length - position;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            buffer = EMPTY;
+            cursor.close();
+        }
+    }
+
+    /*
+     * Ensures there are bytes to read, encoding next row if required. Returns false at the end of the stream.
+     */
+    private boolean fill() {
+        if (position < buffer.length) {
+            return true;
+        }
+        if (closed || !rows.hasNext()) {
+            close();
+            return false;
+        }
+        buffer = encode(rows.next());
+        position = 0;
+        return true;
+    }
+
+    private byte[] encode(List<?> row) {
+        line.setLength(0);
+        line.append("{\"id\":").append(row.get(0));
+        line.append(",\"email\":");
+        string(row.get(1));
+        line.append(",\"yes\":").append(row.get(2));
+        line.append(",\"no\":").append(row.get(3));
+        line.append(",\"na\":").append(row.get(4));
+        line.append(",\"qts\":").append(row.get(5));
+        line.append(",\"pts\":").append(row.get(6));
+        line.append(",\"apiIp\":");
+        string(row.get(7));
+        line.append(",\"workerIp\":");
+        string(row.get(8));
+        line.append("}\n");
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void string(Object value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        String s = value.toString();
+        line.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        line.append(c);
+                    }
+            }
+        }
+        line.append('"');
+    }
+
+}
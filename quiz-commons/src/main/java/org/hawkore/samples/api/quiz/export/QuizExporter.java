@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.export;
+
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.cache.query.FieldsQueryCursor;
+import org.apache.ignite.cache.query.SqlFieldsQuery;
+import org.hawkore.samples.api.quiz.cluster.QuizNode;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+
+/**
+ * Exports all Quizzes as NDJSON (one JSON object per line), see {@link QuizExportStream}.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class QuizExporter {
+
+    /**
+     * Exported columns, same fields as GET /quiz, from the Quizzes cache (SQL schema) of the current generation
+     */
+    static final String EXPORT_QUERY =
+        "select _key, email, bitand(answer, 1) <> 0, bitand(answer, 2) <> 0, bitand(answer, 4) <> 0, qts, pts, "
+            + "apiIp, workerIp from \"%s\".quiz";
+
+    private QuizExporter() {
+    }
+
+    /**
+     * Exports all Quizzes.
+     * <p>
+     * Quizzes are read lazily from a SQL cursor as the returned stream is consumed, so memory usage does not depend
+     * on the number of Quizzes. The stream must be closed to release the cursor.
+     *
+     * @param pageSize
+     *     the number of Quizzes fetched from server nodes per request
+     * @return the NDJSON stream
+     */
+    public static InputStream export(int pageSize) {
+        Ignite ignite = QuizNode.ignite();
+        if (ignite == null) {
+            throw new IllegalStateException("Ignite node not started yet");
+        }
+        String cacheName = QuizGenerations.name("quizCache");
+        SqlFieldsQuery query = new SqlFieldsQuery(String.format(EXPORT_QUERY, cacheName)).setLazy(true).setPageSize(
+            pageSize);
+        FieldsQueryCursor<List<?>> cursor = ignite.cache(cacheName).query(query);
+        return new QuizExportStream(cursor);
+    }
+
+}
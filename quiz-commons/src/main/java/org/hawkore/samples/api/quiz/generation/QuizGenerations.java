@@ -0,0 +1,481 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.generation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import javax.cache.Cache;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicLong;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheAtomicityMode;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.cache.query.ContinuousQuery;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.configuration.AtomicConfiguration;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.lifecycle.LifecycleEventType;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.hawkore.samples.api.quiz.stats.QuizStatsSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generations of Quiz data, so all Quizzes and stats are deleted (truncated) without clearing caches nor resetting
+ * counters one by one.
+ * <p>
+ * Quiz caches ({@code caches}: quizCache, quizEmailIndex and quizRollup) and statistics counters ({@code counters}:
+ * TOTAL_YES, TOTAL_PROC_QUIZS...) belong to a generation, see {@link #name(String)}. The current generation is kept on
+ * {@code quizGeneration} cache and followed by every node with a continuous query.
+ * <p>
+ * Truncate ({@link #truncate()}) switches the current generation with a single atomic update, so all caches and
+ * counters are switched at once and ingestion is not stalled. Creating a cache is a cluster wide partition map
+ * exchange, that briefly pauses cache updates, so caches of the next generation are created in the background
+ * beforehand: by server nodes once started and by the node that switches the generation. Truncate only creates them
+ * (and waits for the exchanges) if they were not created yet. Caches and counters of the previous generation are
+ * destroyed in the background after {@code retireDelay} milliseconds, so operations in progress on it end before.
+ * Quizzes stored into the previous generation meanwhile are deleted too.
+ * <p>
+ * The current generation is read when the node starts, before other Quiz components use it. On server nodes started
+ * before the cluster is active, it is read once the cluster is activated, and {@link #current()} fails meanwhile, so
+ * Quizzes are never written to caches of a retired generation.
+ * <p>
+ * Caches of a new generation are created with the configuration of this node ({@code cacheConfiguration} property of
+ * Ignite configuration) when there is one, otherwise with the configuration of the previous generation caches. Quiz
+ * data is only carried over to a new generation by an explicit migration, see {@link QuizMigration}, truncate is
+ * rejected while it is in progress.
+ * <p>
+ * Register it into {@code lifecycleBeans} property of Ignite configuration (see ignite-config.xml), on all nodes.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizGenerations implements LifecycleBean {
+
+    /**
+     * The generations cache name
+     */
+    public static final String CACHE_NAME = "quizGeneration";
+    private static final Logger log = LoggerFactory.getLogger(QuizGenerations.class);
+    private static final String CURRENT_KEY = "current";
+    private static final String PROCESSED_COUNTER = "TOTAL_PROC_QUIZS";
+    private static final long INIT_RETRY = 1000;
+    private static final long UNKNOWN = -1;
+    private static final Set<LongConsumer> listeners = new CopyOnWriteArraySet<>();
+    private static volatile QuizGenerations active;
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+    private List<String> caches = Arrays.asList("quizCache", "quizEmailIndex", "quizRollup");
+    private List<String> counters = Arrays.asList(QuizStatsSnapshot.COUNTERS);
+    private long retireDelay = 30000;
+    private AtomicConfiguration atomicConfiguration = new AtomicConfiguration().setCacheMode(CacheMode.REPLICATED);
+    private ScheduledExecutorService scheduler;
+    private volatile IgniteCache<String, Long> generations;
+    private QueryCursor<Cache.Entry<String, Long>> updates;
+    private volatile long generation = UNKNOWN;
+
+    /**
+     * The current generation on this node.
+     *
+     * @return the current generation, 0 if generations are not registered on this node
+     * @throws IllegalStateException
+     *     if the current generation was not read yet, for example, cluster is not active yet
+     */
+    public static long current() {
+        QuizGenerations current = active;
+        if (current == null) {
+            return 0;
+        }
+        long generation = current.generation;
+        if (generation == UNKNOWN) {
+            throw new IllegalStateException("Current Quiz generation not known yet");
+        }
+        return generation;
+    }
+
+    /**
+     * Name of a Quiz cache or counter on the current generation.
+     *
+     * @param baseName
+     *     the cache or counter name, for example, quizCache
+     * @return the name on the current generation
+     */
+    public static String name(String baseName) {
+        return name(baseName, current());
+    }
+
+    /**
+     * Name of a Quiz cache or counter on the given generation: the name itself on generation 0 (so existing data is
+     * kept), otherwise suffixed with the generation, for example, quizCache_1.
+     *
+     * @param baseName
+     *     the cache or counter name, for example, quizCache
+     * @param generation
+     *     the generation
+     * @return the name on the given generation
+     */
+    public static String name(String baseName, long generation) {
+        return generation == 0 ? baseName : baseName + "_" + generation;
+    }
+
+    /**
+     * Registers a listener of current generation changes on this node.
+     *
+     * @param listener
+     *     the listener, receives the new generation. Must not block
+     */
+    public static void addListener(LongConsumer listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener of current generation changes.
+     *
+     * @param listener
+     *     the listener
+     */
+    public static void removeListener(LongConsumer listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Deletes all Quizzes and stats, switching to a new generation.
+     *
+     * @return {@code generation}, the new generation, and {@code deleted}, the processed Quizzes of the previous
+     *     generation
+     */
+    public static Map<String, Object> truncate() {
+        QuizGenerations current = active;
+        IgniteCache<String, Long> generations = current == null ? null : current.generations;
+        if (generations == null) {
+            throw new IllegalStateException("Quiz generations not started yet");
+        }
+        if (generations.containsKey(QuizMigration.MIGRATION_KEY)) {
+            throw new IllegalStateException("Quiz data migration in progress");
+        }
+        return current.next(generations);
+    }
+
+    /**
+     * On lifecycle event.
+     *
+     * @param evt
+     *     the lifecycle event
+     */
+    @Override
+    public void onLifecycleEvent(LifecycleEventType evt) {
+        switch (evt) {
+            case AFTER_NODE_START:
+                scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "quiz-generations");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                active = this;
+                // before other Quiz components use current generation, retried in the background if cluster is
+                // inactive yet (server nodes with persistence)
+                init();
+                break;
+            case BEFORE_NODE_STOP:
+                // current generation is still known while other components stop (e.g. counters flush)
+                generations = null;
+                scheduler.shutdownNow();
+                if (updates != null) {
+                    updates.close();
+                }
+                log.info("Quiz generations stopped");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void init() {
+        try {
+            if (!ignite.cluster().active()) {
+                scheduler.schedule(this::init, INIT_RETRY, TimeUnit.MILLISECONDS);
+                return;
+            }
+            CacheConfiguration<String, Long> config = new CacheConfiguration<>(CACHE_NAME);
+            config.setCacheMode(CacheMode.REPLICATED);
+            config.setAtomicityMode(CacheAtomicityMode.ATOMIC);
+            IgniteCache<String, Long> cache = ignite.getOrCreateCache(config);
+            ContinuousQuery<String, Long> query = new ContinuousQuery<>();
+            query.setLocalListener(events -> events.forEach(event -> {
+                if (CURRENT_KEY.equals(event.getKey())) {
+                    advance(event.getValue());
+                }
+            }));
+            updates = cache.query(query);
+            generations = cache;
+            Long stored = cache.get(CURRENT_KEY);
+            advance(stored == null ? 0 : stored);
+            log.info("Quiz generations started, current generation {}", generation);
+            // previous generations not retired yet, for example, node stopped before retiring them
+            for (long previous = generation - 1; previous >= 0 && exists(previous); previous--) {
+                scheduleRetire(previous);
+            }
+            if (!ignite.cluster().localNode().isClient()) {
+                schedulePrepare(generation + 1);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unable to start Quiz generations, will be retried: {}", e.getMessage());
+            scheduler.schedule(this::init, INIT_RETRY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void advance(Long next) {
+        if (next == null || next <= generation) {
+            return;
+        }
+        generation = next;
+        log.info("Current Quiz generation is {}", next);
+        for (LongConsumer listener : listeners) {
+            try {
+                listener.accept(next);
+            } catch (RuntimeException e) {
+                log.warn("Quiz generation listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private synchronized Map<String, Object> next(IgniteCache<String, Long> generations) {
+        long previous;
+        long next;
+        do {
+            Long stored = generations.get(CURRENT_KEY);
+            previous = stored == null ? 0 : stored;
+            next = previous + 1;
+            if (!prepared(next)) {
+                log.info("Caches of Quiz generation {} not created yet, creating them", next);
+                createCaches(previous, next);
+            }
+        } while (!switchTo(generations, previous, next));
+        IgniteAtomicLong processed = ignite.atomicLong(name(PROCESSED_COUNTER, previous), atomicConfiguration, 0,
+            false);
+        Map<String, Object> result = new HashMap<>();
+        result.put("generation", next);
+        result.put("deleted", processed == null ? 0 : processed.get());
+        return result;
+    }
+
+    /*
+     * Switches current generation from previous to next, if nobody did it before, then retires previous generation
+     * and prepares the one after next in the background
+     */
+    synchronized boolean switchTo(IgniteCache<String, Long> generations, long previous, long next) {
+        if (!(previous == 0 ? generations.putIfAbsent(CURRENT_KEY, next)
+                  : generations.replace(CURRENT_KEY, previous, next))) {
+            return false;
+        }
+        // don't wait for the continuous query on this node
+        advance(next);
+        scheduleRetire(previous);
+        schedulePrepare(next + 1);
+        return true;
+    }
+
+    /*
+     * Same configuration as the previous generation caches, so SQL tables and indexes are kept, unless this node
+     * configures the cache
+     */
+    void createCaches(long previous, long next) {
+        for (String cache : caches) {
+            CacheConfiguration<Object, Object> templateConfig = configuration(cache);
+            if (templateConfig == null) {
+                IgniteCache<?, ?> template = ignite.cache(name(cache, previous));
+                if (template == null) {
+                    log.warn("Quiz cache {} not found, {} will not be created", name(cache, previous),
+                        name(cache, next));
+                    continue;
+                }
+                templateConfig = existingConfiguration(template);
+            }
+            CacheConfiguration<Object, Object> config = new CacheConfiguration<>(templateConfig);
+            // near cache of this client node (see QuizNearCache), not for all nodes
+            config.setNearConfiguration(null);
+            ignite.getOrCreateCache(config.setName(name(cache, next)));
+        }
+    }
+
+    private boolean prepared(long next) {
+        Collection<String> existing = ignite.cacheNames();
+        for (String cache : caches) {
+            if (!existing.contains(name(cache, next))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void schedulePrepare(long next) {
+        try {
+            scheduler.execute(() -> {
+                try {
+                    if (generation == next - 1) {
+                        createCaches(next - 1, next);
+                        log.info("Caches of Quiz generation {} created", next);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Unable to create caches of Quiz generation {}: {}", next, e.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            // node is stopping
+            log.debug("Unable to schedule creation of Quiz generation {}: {}", next, e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    CacheConfiguration<Object, Object> configuration(String cache) {
+        CacheConfiguration<?, ?>[] configs = ignite.configuration().getCacheConfiguration();
+        if (configs != null) {
+            for (CacheConfiguration<?, ?> config : configs) {
+                if (cache.equals(config.getName())) {
+                    return (CacheConfiguration<Object, Object>)config;
+                }
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    static CacheConfiguration<Object, Object> existingConfiguration(IgniteCache<?, ?> cache) {
+        return cache.getConfiguration(CacheConfiguration.class);
+    }
+
+    private boolean exists(long previous) {
+        for (String cache : caches) {
+            if (ignite.cache(name(cache, previous)) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void scheduleRetire(long previous) {
+        try {
+            scheduler.schedule(() -> retire(previous), retireDelay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // node is stopping, next started node will retire it
+            log.debug("Unable to schedule retirement of Quiz generation {}: {}", previous, e.getMessage());
+        }
+    }
+
+    private void retire(long previous) {
+        try {
+            IgniteCache<String, Long> generations = this.generations;
+            if (generations != null) {
+                // Quizzes stored into previous generation while it was migrated, if it was
+                QuizMigration.carryOver(this, generations, previous);
+            }
+            for (String cache : caches) {
+                // Ignite 2.8.1 logs a harmless NullPointerException (IgniteServiceProcessor) per destroyed cache while
+                // services not bound to a cache (quizRollup) are deployed
+                ignite.destroyCache(name(cache, previous));
+            }
+            for (String counter : counters) {
+                IgniteAtomicLong atomic = ignite.atomicLong(name(counter, previous), atomicConfiguration, 0, false);
+                if (atomic != null) {
+                    atomic.close();
+                }
+            }
+            log.info("Quiz generation {} retired", previous);
+        } catch (RuntimeException e) {
+            log.warn("Unable to retire Quiz generation {}: {}", previous, e.getMessage());
+        }
+    }
+
+    /*
+     * Generations of this node, null if not started yet
+     */
+    static QuizGenerations active() {
+        return active;
+    }
+
+    Ignite ignite() {
+        return ignite;
+    }
+
+    IgniteCache<String, Long> generations() {
+        return generations;
+    }
+
+    List<String> caches() {
+        return caches;
+    }
+
+    List<String> counters() {
+        return counters;
+    }
+
+    AtomicConfiguration atomicConfiguration() {
+        return atomicConfiguration;
+    }
+
+    /**
+     * Sets the Quiz caches that belong to a generation.
+     *
+     * @param caches
+     *     the cache names, defaults to quizCache, quizEmailIndex and quizRollup
+     */
+    public void setCaches(List<String> caches) {
+        this.caches = caches;
+    }
+
+    /**
+     * Sets the Quiz statistics counters that belong to a generation.
+     *
+     * @param counters
+     *     the counter (atomic long) names, defaults to {@link QuizStatsSnapshot#COUNTERS}
+     */
+    public void setCounters(List<String> counters) {
+        this.counters = counters;
+    }
+
+    /**
+     * Sets the time to wait before destroying caches and counters of a previous generation.
+     *
+     * @param retireDelay
+     *     the retire delay in milliseconds, defaults to 30000
+     */
+    public void setRetireDelay(long retireDelay) {
+        this.retireDelay = retireDelay;
+    }
+
+    /**
+     * Sets the configuration of the counters atomic longs, must match the one used by {@link
+     * org.hawkore.samples.api.quiz.stats.QuizCounters}.
+     *
+     * @param atomicConfiguration
+     *     the atomic configuration, defaults to REPLICATED
+     */
+    public void setAtomicConfiguration(AtomicConfiguration atomicConfiguration) {
+        this.atomicConfiguration = atomicConfiguration;
+    }
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.generation;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.Cache;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicLong;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.IgniteDataStreamer;
+import org.apache.ignite.cache.QueryEntity;
+import org.apache.ignite.cache.affinity.AffinityFunction;
+import org.apache.ignite.cache.affinity.rendezvous.RendezvousAffinityFunction;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.lifecycle.LifecycleEventType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Explicit migration of Quiz data to a new Quiz generation (see {@link QuizGenerations}), for clusters with Quiz data
+ * stored by previous versions. It is not registered by default.
+ * <p>
+ * The affinity function and SQL schema of an existing cache can not be changed (server nodes with persistence keep the
+ * configuration of created caches), so once started, if a Quiz cache of the current generation has a different
+ * affinity function than the one configured on this node (for example, {@code quizCache} created before {@link
+ * org.hawkore.samples.api.quiz.cluster.QuizAffinityFunction}) or lacks SQL columns configured on this node (for
+ * example, {@code answer} of {@link org.hawkore.samples.api.quiz.entities.Quiz}), Quiz data is migrated: caches of the
+ * next generation are created and populated from the current ones, generation is switched, and Quizzes stored into the
+ * previous generation meanwhile and its counters are carried over to the new generation before it is retired. Quiz
+ * data is not deleted while a migration is in progress.
+ * <p>
+ * Entries are copied deserialized, so Quizzes stored by previous versions are rewritten with the current binary
+ * layout.
+ * <p>
+ * Register it into {@code lifecycleBeans} property of Ignite configuration, after {@link QuizGenerations}, on a single
+ * server node, and remove it once the migration is done.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizMigration implements LifecycleBean {
+
+    /**
+     * Key of the generation being populated by a migration, on {@code quizGeneration} cache
+     */
+    static final String MIGRATION_KEY = "migration";
+    /**
+     * Prefix of the key of a migrated generation, with the generation it was migrated to as value
+     */
+    static final String MIGRATED_KEY_PREFIX = "migrated_";
+    private static final Logger log = LoggerFactory.getLogger(QuizMigration.class);
+    private static final long START_POLL = 1000;
+    private volatile Thread migration;
+
+    /**
+     * Quizzes stored into the given generation while it was migrated and its counters are carried over to the
+     * generation it was migrated to, if it was. Done once, before the given generation is retired.
+     *
+     * @param generations
+     *     the Quiz generations of this node
+     * @param cache
+     *     the generations cache
+     * @param previous
+     *     the generation to retire
+     */
+    static void carryOver(QuizGenerations generations, IgniteCache<String, Long> cache, long previous) {
+        Long migrated = cache.get(MIGRATED_KEY_PREFIX + previous);
+        if (migrated != null) {
+            copyCaches(generations, previous, migrated);
+            carryCounters(generations, previous, migrated);
+            // once carried over, so counters are not added twice
+            cache.remove(MIGRATED_KEY_PREFIX + previous);
+        }
+    }
+
+    /**
+     * On lifecycle event.
+     *
+     * @param evt
+     *     the lifecycle event
+     */
+    @Override
+    public void onLifecycleEvent(LifecycleEventType evt) {
+        switch (evt) {
+            case AFTER_NODE_START:
+                migration = new Thread(this::await, "quiz-migration");
+                migration.setDaemon(true);
+                migration.start();
+                break;
+            case BEFORE_NODE_STOP:
+                Thread current = migration;
+                if (current != null) {
+                    current.interrupt();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /*
+     * Once current generation is known, for example, cluster is activated
+     */
+    private void await() {
+        try {
+            while (true) {
+                QuizGenerations generations = QuizGenerations.active();
+                if (generations != null && generations.generations() != null) {
+                    try {
+                        checkMigration(generations, QuizGenerations.current());
+                        return;
+                    } catch (IllegalStateException e) {
+                        // current generation not known yet
+                    }
+                }
+                TimeUnit.MILLISECONDS.sleep(START_POLL);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.warn("Unable to migrate Quiz data, will be retried on next start: {}", e.getMessage());
+        }
+    }
+
+    private void checkMigration(QuizGenerations generations, long generation) {
+        IgniteCache<String, Long> cache = generations.generations();
+        List<String> changed = new ArrayList<>();
+        for (String name : generations.caches()) {
+            CacheConfiguration<Object, Object> config = generations.configuration(name);
+            IgniteCache<?, ?> existing = generations.ignite().cache(QuizGenerations.name(name, generation));
+            if (config != null && existing != null && differs(config, existing)) {
+                changed.add(name);
+            }
+        }
+        if (changed.isEmpty()) {
+            // migrated before, or mark left by a failed migration
+            cache.remove(MIGRATION_KEY);
+            log.info("Quiz generation {} does not need to be migrated", generation);
+            return;
+        }
+        log.info("Configuration of Quiz caches {} changed, Quiz generation {} will be migrated", changed, generation);
+        migrate(generations, cache, generation);
+    }
+
+    private void migrate(QuizGenerations generations, IgniteCache<String, Long> cache, long previous) {
+        Ignite ignite = generations.ignite();
+        long next = previous + 1;
+        try {
+            cache.put(MIGRATION_KEY, next);
+            log.info("Migrating Quiz generation {} to {}", previous, next);
+            for (String name : generations.caches()) {
+                // created beforehand with the previous configuration, still empty
+                CacheConfiguration<Object, Object> config = generations.configuration(name);
+                IgniteCache<?, ?> created = ignite.cache(QuizGenerations.name(name, next));
+                if (config != null && created != null && differs(config, created)) {
+                    ignite.destroyCache(QuizGenerations.name(name, next));
+                }
+            }
+            generations.createCaches(previous, next);
+            copyCaches(generations, previous, next);
+            // carried over by the node that retires previous generation
+            cache.put(MIGRATED_KEY_PREFIX + previous, next);
+            if (!generations.switchTo(cache, previous, next)) {
+                log.info("Quiz generation {} already switched by other node", previous);
+                return;
+            }
+            log.info("Quiz generation {} migrated to {}", previous, next);
+        } catch (RuntimeException e) {
+            log.warn("Unable to migrate Quiz generation {}, will be retried on next start: {}", previous,
+                e.getMessage());
+        } finally {
+            try {
+                cache.remove(MIGRATION_KEY);
+            } catch (RuntimeException e) {
+                log.debug("Unable to remove Quiz migration mark: {}", e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Existing entries of target caches are kept, so copy can be repeated. Deserialized, so values are written with
+     * the current binary layout
+     */
+    private static void copyCaches(QuizGenerations generations, long from, long to) {
+        Ignite ignite = generations.ignite();
+        for (String name : generations.caches()) {
+            IgniteCache<Object, Object> source = ignite.cache(QuizGenerations.name(name, from));
+            if (source == null || ignite.cache(QuizGenerations.name(name, to)) == null) {
+                continue;
+            }
+            long copied = 0;
+            try (IgniteDataStreamer<Object, Object> streamer = ignite.dataStreamer(QuizGenerations.name(name, to));
+                 QueryCursor<Cache.Entry<Object, Object>> cursor = source.query(new ScanQuery<>())) {
+                for (Cache.Entry<Object, Object> entry : cursor) {
+                    streamer.addData(entry.getKey(), entry.getValue());
+                    copied++;
+                }
+            }
+            log.info("Copied {} entries from {} to {}", copied, QuizGenerations.name(name, from),
+                QuizGenerations.name(name, to));
+        }
+    }
+
+    private static void carryCounters(QuizGenerations generations, long from, long to) {
+        Ignite ignite = generations.ignite();
+        for (String counter : generations.counters()) {
+            IgniteAtomicLong source = ignite.atomicLong(QuizGenerations.name(counter, from),
+                generations.atomicConfiguration(), 0, false);
+            long value = source == null ? 0 : source.get();
+            if (value != 0) {
+                ignite.atomicLong(QuizGenerations.name(counter, to), generations.atomicConfiguration(), 0, true)
+                    .addAndGet(value);
+            }
+        }
+    }
+
+    /*
+     * Whether the existing cache has another affinity function or lacks SQL columns of the configured one
+     */
+    private static boolean differs(CacheConfiguration<?, ?> config, IgniteCache<?, ?> cache) {
+        CacheConfiguration<Object, Object> existing = QuizGenerations.existingConfiguration(cache);
+        return affinityClass(config) != affinityClass(existing) || !fields(existing).containsAll(fields(config));
+    }
+
+    private static Set<String> fields(CacheConfiguration<?, ?> config) {
+        Set<String> fields = new HashSet<>();
+        for (QueryEntity entity : config.getQueryEntities()) {
+            for (String field : entity.getFields().keySet()) {
+                fields.add(entity.getValueType() + "." + field);
+            }
+        }
+        return fields;
+    }
+
+    private static Class<?> affinityClass(CacheConfiguration<?, ?> config) {
+        AffinityFunction affinity = config.getAffinity();
+        return affinity == null ? RendezvousAffinityFunction.class : affinity.getClass();
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.ingest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteQueue;
+import org.hawkore.samples.api.quiz.cluster.QuizNode;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.hawkore.samples.api.quiz.shard.QuizShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drains Quizzes from a distributed queue in batches, so a Mule flow (or the load harness) can process them as one
+ * unit.
+ * <p>
+ * {@link IgniteQueue} has no multi-item poll, so every Quiz is still taken with its own {@code poll}. Drained Quizzes
+ * are removed from the queue, callers should go on with the rest of a batch if one of its Quizzes fails.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class QuizQueueDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizQueueDrainer.class);
+    private static final long SHARD_POLL = 10;
+    private static final AtomicInteger nextShard = new AtomicInteger();
+    private static volatile ShardQueues shardQueues;
+
+    private QuizQueueDrainer() {
+    }
+
+    /**
+     * Takes up to {@code maxItems} Quizzes from the given queue, waiting at most {@code maxWaitMillis} for the batch
+     * to be filled. Already enqueued Quizzes are always drained, even if the wait time is exhausted.
+     *
+     * @param queueName
+     *     the queue name
+     * @param maxItems
+     *     the max number of Quizzes to return
+     * @param maxWaitMillis
+     *     the max time to wait for new Quizzes, in milliseconds
+     * @return the drained Quizzes, empty if none
+     */
+    public static List<Quiz> drain(String queueName, int maxItems, long maxWaitMillis) {
+        Ignite ignite = QuizNode.ignite();
+        if (ignite == null) {
+            log.debug("Ignite node not started yet, nothing to drain from {}", queueName);
+            return Collections.emptyList();
+        }
+        // null if queue was not created yet by publishers
+        IgniteQueue<Quiz> queue = ignite.queue(queueName, 0, null);
+        if (queue == null) {
+            idle(maxWaitMillis);
+            return Collections.emptyList();
+        }
+        List<Quiz> batch = new ArrayList<>(maxItems);
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        while (batch.size() < maxItems) {
+            long remaining = deadline - System.currentTimeMillis();
+            Quiz quiz = remaining > 0 ? queue.poll(remaining, TimeUnit.MILLISECONDS) : queue.poll();
+            if (quiz == null) {
+                break;
+            }
+            batch.add(quiz);
+        }
+        if (log.isDebugEnabled() && !batch.isEmpty()) {
+            log.debug("Drained {} Quizzes from {}", batch.size(), queueName);
+        }
+        return batch;
+    }
+
+    /**
+     * Takes up to {@code maxItems} Quizzes from the shards of the given queue assigned to this worker and leased by it
+     * (see {@link QuizShards#leased(Ignite, String, int)}, a node must drain one batch at a time), waiting at most {@code maxWaitMillis} for any of them to have Quizzes. Quizzes of each shard are
+     * returned in queue order.
+     *
+     * @param queueName
+     *     the base queue name
+     * @param shards
+     *     the number of shards, if 1 the queue is not sharded
+     * @param maxItems
+     *     the max number of Quizzes to return
+     * @param maxWaitMillis
+     *     the max time to wait for new Quizzes, in milliseconds
+     * @return the drained Quizzes, empty if none
+     */
+    public static List<Quiz> drain(String queueName, int shards, int maxItems, long maxWaitMillis) {
+        if (shards <= 1) {
+            return drain(queueName, maxItems, maxWaitMillis);
+        }
+        Ignite ignite = QuizNode.ignite();
+        if (ignite == null) {
+            log.debug("Ignite node not started yet, nothing to drain from {}", queueName);
+            return Collections.emptyList();
+        }
+        ShardQueues queues = shardQueues(ignite, queueName, shards);
+        List<Integer> assigned = queues.assigned;
+        if (assigned.isEmpty()) {
+            log.debug("No shards of {} assigned to (and leased by) this worker", queueName);
+            idle(maxWaitMillis);
+            return Collections.emptyList();
+        }
+        // rotates first shard, so all assigned shards are drained even if batches are filled by the first ones
+        int first = Math.floorMod(nextShard.getAndIncrement(), assigned.size());
+        List<Quiz> batch = new ArrayList<>(maxItems);
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        int waiting = first;
+        do {
+            for (int i = 0; i < assigned.size() && batch.size() < maxItems; i++) {
+                IgniteQueue<Quiz> queue = queues.get((first + i) % assigned.size());
+                Quiz quiz;
+                while (queue != null && batch.size() < maxItems && (quiz = queue.poll()) != null) {
+                    batch.add(quiz);
+                }
+            }
+            if (!batch.isEmpty()) {
+                break;
+            }
+            // wait a while for new Quizzes on assigned shards, one at a time
+            IgniteQueue<Quiz> queue = queues.next(waiting++);
+            long remaining = deadline - System.currentTimeMillis();
+            if (queue == null) {
+                // none of the assigned shards was created yet by publishers
+                idle(remaining);
+                break;
+            }
+            Quiz quiz = remaining <= 0 ? null : queue.poll(Math.min(SHARD_POLL, remaining), TimeUnit.MILLISECONDS);
+            if (quiz != null) {
+                batch.add(quiz);
+            }
+        } while (batch.isEmpty() && System.currentTimeMillis() < deadline);
+        if (log.isDebugEnabled() && !batch.isEmpty()) {
+            log.debug("Drained {} Quizzes from {} shards {}", batch.size(), queueName, assigned);
+        }
+        return batch;
+    }
+
+    /*
+     * Queues of the shards leased by this worker, looked up again when topology or leases change. Queues not created
+     * yet by publishers are looked up once per drain
+     */
+    private static ShardQueues shardQueues(Ignite ignite, String queueName, int shards) {
+        List<Integer> assigned = QuizShards.leased(ignite, queueName, shards);
+        long topologyVersion = ignite.cluster().topologyVersion();
+        ShardQueues current = shardQueues;
+        if (current == null || current.topologyVersion != topologyVersion || !current.queueName.equals(queueName)
+                || !current.assigned.equals(assigned)) {
+            current = new ShardQueues(topologyVersion, queueName, assigned);
+            shardQueues = current;
+        }
+        current.lookupMissing(ignite);
+        return current;
+    }
+
+    private static void idle(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class ShardQueues {
+
+        private final long topologyVersion;
+        private final String queueName;
+        private final List<Integer> assigned;
+        private final AtomicReferenceArray<IgniteQueue<Quiz>> queues;
+
+        private ShardQueues(long topologyVersion, String queueName, List<Integer> assigned) {
+            this.topologyVersion = topologyVersion;
+            this.queueName = queueName;
+            this.assigned = assigned;
+            this.queues = new AtomicReferenceArray<>(assigned.size());
+        }
+
+        private void lookupMissing(Ignite ignite) {
+            for (int i = 0; i < assigned.size(); i++) {
+                if (queues.get(i) == null) {
+                    // null if queue was not created yet by publishers
+                    queues.set(i, ignite.queue(QuizShards.queueName(queueName, assigned.get(i)), 0, null));
+                }
+            }
+        }
+
+        private IgniteQueue<Quiz> get(int i) {
+            return queues.get(i);
+        }
+
+        /*
+         * The i-th created queue, rotating over assigned shards, null if none was created yet
+         */
+        private IgniteQueue<Quiz> next(int i) {
+            for (int j = 0; j < assigned.size(); j++) {
+                IgniteQueue<Quiz> queue = queues.get(Math.floorMod(i + j, assigned.size()));
+                if (queue != null) {
+                    return queue;
+                }
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.lifecycle.LifecycleEventType;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latency histograms of processed Quizzes, computed from Quiz timestamps once the Quiz store is dispatched:
+ * <ul>
+ * <li>{@code queueWait}: from received by API node ({@code qts}) to processing start on worker ({@code pts})</li>
+ * <li>{@code dispatch}: from processing start on worker to store dispatched</li>
+ * <li>{@code endToEnd}: from received by API node to store dispatched</li>
+ * </ul>
+ * Workers store Quizzes asynchronously (async cache put or data streamer), so the time until a Quiz is stored is not
+ * included. On affinity dispatch mode, Quizzes are stored synchronously, so the store is dispatched once stored.
+ * Every stage is broken down per worker ({@code workerIp}) and per API node ({@code apiIp}), and exposed as a JMX
+ * MBean {@value #DOMAIN}:type=Latency,stage=...,by=worker|api,ip=... (see {@link QuizLatencyMXBean}), with
+ * percentiles of the last {@code interval} milliseconds. Histograms of workers or API nodes without latencies for
+ * {@code maxIdleIntervals} intervals (e.g. replaced pods) are removed, and their MBeans unregistered.
+ * <p>
+ * Register it into {@code lifecycleBeans} property of Ignite configuration (see ignite-config.xml), nothing is
+ * recorded otherwise.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizLatency implements LifecycleBean {
+
+    /**
+     * JMX domain of Quiz MBeans
+     */
+    public static final String DOMAIN = "org.hawkore.samples.quiz";
+    private static final Logger log = LoggerFactory.getLogger(QuizLatency.class);
+    private static volatile QuizLatency active;
+
+    private long interval = 10000;
+    private int significantDigits = 2;
+    private int maxIdleIntervals = 6;
+    private final ConcurrentMap<String, QuizLatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private ScheduledExecutorService rotator;
+
+    /**
+     * Records latencies of the given Quiz, once its store is dispatched.
+     *
+     * @param quiz
+     *     the Quiz, with received ({@code qts}) and processing ({@code pts}) timestamps
+     */
+    public static void record(Quiz quiz) {
+        QuizLatency current = active;
+        if (current == null || quiz.getQts() <= 0 || quiz.getPts() <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        current.record("queueWait", quiz, quiz.getPts() - quiz.getQts());
+        current.record("dispatch", quiz, now - quiz.getPts());
+        current.record("endToEnd", quiz, now - quiz.getQts());
+    }
+
+    private void record(String stage, Quiz quiz, long millis) {
+        histogram(stage, "worker", quiz.getWorkerIp()).record(millis);
+        histogram(stage, "api", quiz.getApiIp()).record(millis);
+    }
+
+    private QuizLatencyHistogram histogram(String stage, String by, String ip) {
+        String node = ip == null || ip.isEmpty() ? "unknown" : ip;
+        return histograms.computeIfAbsent(stage + '/' + by + '/' + node, key -> {
+            QuizLatencyHistogram histogram = new QuizLatencyHistogram(stage, by, node, significantDigits);
+            register(histogram);
+            return histogram;
+        });
+    }
+
+    /**
+     * On lifecycle event.
+     *
+     * @param evt
+     *     the lifecycle event
+     */
+    @Override
+    public void onLifecycleEvent(LifecycleEventType evt) {
+        switch (evt) {
+            case AFTER_NODE_START:
+                rotator = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "quiz-latency-rotator");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                rotator.scheduleAtFixedRate(this::rotate, interval, interval, TimeUnit.MILLISECONDS);
+                active = this;
+                log.info("Quiz latency histograms started, interval {} ms", interval);
+                break;
+            case BEFORE_NODE_STOP:
+                active = null;
+                if (rotator != null) {
+                    rotator.shutdownNow();
+                }
+                histograms.values().forEach(this::unregister);
+                histograms.clear();
+                log.info("Quiz latency histograms stopped");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void rotate() {
+        histograms.forEach((key, histogram) -> {
+            histogram.rotate();
+            if (histogram.getIdleIntervals() >= maxIdleIntervals && histograms.remove(key, histogram)) {
+                unregister(histogram);
+                log.debug("Idle Quiz latency histogram {} removed", key);
+            }
+        });
+    }
+
+    private void register(QuizLatencyHistogram histogram) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(histogram, name(histogram));
+        } catch (JMException e) {
+            log.warn("Unable to register Quiz latency MBean {}/{}/{}: {}", histogram.getStage(), histogram.getBy(),
+                histogram.getIp(), e.getMessage());
+        }
+    }
+
+    private void unregister(QuizLatencyHistogram histogram) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = name(histogram);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.debug("Unable to unregister Quiz latency MBean: {}", e.getMessage());
+        }
+    }
+
+    private static ObjectName name(QuizLatencyHistogram histogram) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Latency,stage=" + histogram.getStage() + ",by=" + histogram.getBy()
+                                  + ",ip=" + ObjectName.quote(histogram.getIp()));
+    }
+
+    /**
+     * Sets the interval percentiles are computed over.
+     *
+     * @param interval
+     *     the interval in milliseconds, defaults to 10000
+     */
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Sets the number of consecutive intervals without latencies after which a histogram is removed.
+     *
+     * @param maxIdleIntervals
+     *     the max idle intervals, defaults to 6
+     */
+    public void setMaxIdleIntervals(int maxIdleIntervals) {
+        this.maxIdleIntervals = maxIdleIntervals;
+    }
+
+    /**
+     * Sets the precision of the histograms.
+     *
+     * @param significantDigits
+     *     the number of significant value digits, from 0 to 5, defaults to 2
+     */
+    public void setSignificantDigits(int significantDigits) {
+        this.significantDigits = significantDigits;
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latency histogram of a stage for a worker or API node. Values are recorded without locks into an HdrHistogram
+ * {@link Recorder}, and exposed from the last completed interval, see {@link #rotate()}.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizLatencyHistogram implements QuizLatencyMXBean {
+
+    private final String stage;
+    private final String by;
+    private final String ip;
+    private final Recorder recorder;
+    private final LongAdder count = new LongAdder();
+    private volatile Histogram interval;
+    private Histogram recycled;
+    private int idleIntervals;
+
+    /**
+     * Instantiates a new Quiz latency histogram.
+     *
+     * @param stage
+     *     the measured stage
+     * @param by
+     *     the breakdown dimension
+     * @param ip
+     *     the IP of the worker or API node
+     * @param significantDigits
+     *     the number of significant value digits kept by the histogram
+     */
+    public QuizLatencyHistogram(String stage, String by, String ip, int significantDigits) {
+        this.stage = stage;
+        this.by = by;
+        this.ip = ip;
+        this.recorder = new Recorder(significantDigits);
+        this.interval = recorder.getIntervalHistogram();
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param millis
+     *     the latency in milliseconds, negative values (clock skew between nodes) are recorded as 0
+     */
+    public void record(long millis) {
+        recorder.recordValue(Math.max(0, millis));
+        count.increment();
+    }
+
+    /**
+     * Completes current interval, so its latencies are exposed until next rotation.
+     */
+    public synchronized void rotate() {
+        Histogram completed = recorder.getIntervalHistogram(recycled);
+        recycled = interval;
+        interval = completed;
+        idleIntervals = completed.getTotalCount() == 0 ? idleIntervals + 1 : 0;
+    }
+
+    /**
+     * @return the number of consecutive completed intervals without latencies
+     */
+    public synchronized int getIdleIntervals() {
+        return idleIntervals;
+    }
+
+    @Override
+    public String getStage() {
+        return stage;
+    }
+
+    @Override
+    public String getBy() {
+        return by;
+    }
+
+    @Override
+    public String getIp() {
+        return ip;
+    }
+
+    @Override
+    public long getCount() {
+        return count.sum();
+    }
+
+    @Override
+    public long getIntervalCount() {
+        return interval.getTotalCount();
+    }
+
+    @Override
+    public double getMean() {
+        return interval.getMean();
+    }
+
+    @Override
+    public double getMax() {
+        return interval.getMaxValue();
+    }
+
+    @Override
+    public double getP50() {
+        return interval.getValueAtPercentile(50);
+    }
+
+    @Override
+    public double getP90() {
+        return interval.getValueAtPercentile(90);
+    }
+
+    @Override
+    public double getP99() {
+        return interval.getValueAtPercentile(99);
+    }
+
+    @Override
+    public double getP999() {
+        return interval.getValueAtPercentile(99.9);
+    }
+
+}
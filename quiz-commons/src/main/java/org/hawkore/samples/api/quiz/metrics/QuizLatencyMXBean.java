@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.metrics;
+
+/**
+ * JMX view of a Quiz latency histogram. Latencies are in milliseconds and computed over the last completed interval,
+ * except {@link #getCount()}.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public interface QuizLatencyMXBean {
+
+    /**
+     * @return the measured stage: queueWait, dispatch or endToEnd
+     */
+    String getStage();
+
+    /**
+     * @return the breakdown dimension: worker or api
+     */
+    String getBy();
+
+    /**
+     * @return the IP of the worker or API node
+     */
+    String getIp();
+
+    /**
+     * @return the total number of recorded Quizzes
+     */
+    long getCount();
+
+    /**
+     * @return the number of recorded Quizzes in the last interval
+     */
+    long getIntervalCount();
+
+    /**
+     * @return the mean latency
+     */
+    double getMean();
+
+    /**
+     * @return the max latency
+     */
+    double getMax();
+
+    /**
+     * @return the 50th percentile latency
+     */
+    double getP50();
+
+    /**
+     * @return the 90th percentile latency
+     */
+    double getP90();
+
+    /**
+     * @return the 99th percentile latency
+     */
+    double getP99();
+
+    /**
+     * @return the 99.9th percentile latency
+     */
+    double getP999();
+
+}
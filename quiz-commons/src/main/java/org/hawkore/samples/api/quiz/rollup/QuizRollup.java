@@ -0,0 +1,102 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.rollup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.hawkore.samples.api.quiz.cluster.QuizNode;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+
+/**
+ * Per minute Quiz statistics, pre-aggregated on {@code quizRollup} cache by {@link QuizRollupService}, so time range
+ * statistics are read with a key lookup per minute instead of scanning {@code quizCache}.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class QuizRollup {
+
+    /**
+     * The rollup cache name, see ignite-config.xml
+     */
+    public static final String CACHE_NAME = "quizRollup";
+    /**
+     * Bucket width in milliseconds
+     */
+    public static final long MINUTE = 60000L;
+    /**
+     * Key of the flushed watermark on {@code quizRollup} (a {@link Long}, not a bucket): minutes before it are complete,
+     * see {@link QuizRollupService}. Never a minute key
+     */
+    public static final long WATERMARK_KEY = Long.MIN_VALUE;
+
+    private QuizRollup() {
+    }
+
+    /**
+     * Bucket (minute start timestamp) of the given timestamp.
+     *
+     * @param timestamp
+     *     the timestamp in milliseconds
+     * @return the bucket
+     */
+    public static long bucket(long timestamp) {
+        return Math.floorDiv(timestamp, MINUTE) * MINUTE;
+    }
+
+    /**
+     * Per minute statistics of Quizzes processed within the given time range, including minutes without Quizzes.
+     *
+     * @param from
+     *     the range start timestamp in milliseconds, inclusive
+     * @param to
+     *     the range end timestamp in milliseconds, inclusive
+     * @return the statistics per minute, in time order
+     */
+    public static List<Map<String, Object>> range(long from, long to) {
+        Ignite ignite = QuizNode.ignite();
+        if (ignite == null) {
+            throw new IllegalStateException("Ignite node not started yet");
+        }
+        Set<Long> minutes = new TreeSet<>();
+        for (long minute = bucket(from); minute <= to; minute += MINUTE) {
+            minutes.add(minute);
+        }
+        IgniteCache<Long, QuizRollupBucket> rollup = ignite.cache(QuizGenerations.name(CACHE_NAME));
+        Map<Long, QuizRollupBucket> buckets = rollup.getAll(minutes);
+        List<Map<String, Object>> series = new ArrayList<>(minutes.size());
+        for (Long minute : minutes) {
+            QuizRollupBucket bucket = buckets.getOrDefault(minute, new QuizRollupBucket());
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("minute", minute);
+            point.put("yes", bucket.getYes());
+            point.put("no", bucket.getNo());
+            point.put("na", bucket.getNa());
+            point.put("processed", bucket.getProcessed());
+            point.put("avgLatency", bucket.getAvgLatency());
+            point.put("maxLatency", bucket.getMaxLatency());
+            series.add(point);
+        }
+        return series;
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.rollup;
+
+import java.io.Serializable;
+import java.util.StringJoiner;
+
+import org.hawkore.samples.api.quiz.entities.Quiz;
+
+/**
+ * Statistics of the Quizzes processed within a minute, keyed by the minute start timestamp on {@code quizRollup}.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizRollupBucket implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private long yes;
+    private long no;
+    private long na;
+    private long processed;
+    private long latencySum;
+    private long latencyMax;
+
+    /**
+     * Bucket of a single Quiz.
+     *
+     * @param quiz
+     *     the processed Quiz
+     * @return the bucket
+     */
+    public static QuizRollupBucket of(Quiz quiz) {
+        QuizRollupBucket bucket = new QuizRollupBucket();
+        bucket.yes = quiz.isYes() ? 1 : 0;
+        bucket.no = quiz.isNo() ? 1 : 0;
+        bucket.na = quiz.isNa() ? 1 : 0;
+        bucket.processed = 1;
+        bucket.latencySum = Math.max(0, quiz.getPts() - quiz.getQts());
+        bucket.latencyMax = bucket.latencySum;
+        return bucket;
+    }
+
+    /**
+     * Adds statistics of other bucket to this one.
+     *
+     * @param other
+     *     the other bucket
+     * @return this bucket
+     */
+    public QuizRollupBucket merge(QuizRollupBucket other) {
+        yes += other.yes;
+        no += other.no;
+        na += other.na;
+        processed += other.processed;
+        latencySum += other.latencySum;
+        latencyMax = Math.max(latencyMax, other.latencyMax);
+        return this;
+    }
+
+    public long getYes() {
+        return yes;
+    }
+
+    public long getNo() {
+        return no;
+    }
+
+    public long getNa() {
+        return na;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @return the average time from received ({@code qts}) to processing start ({@code pts}) in milliseconds
+     */
+    public double getAvgLatency() {
+        return processed == 0 ? 0 : (double)latencySum / processed;
+    }
+
+    /**
+     * @return the max time from received ({@code qts}) to processing start ({@code pts}) in milliseconds
+     */
+    public long getMaxLatency() {
+        return latencyMax;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", QuizRollupBucket.class.getSimpleName() + "[", "]").add("yes=" + yes)
+                   .add("no=" + no).add("na=" + na).add("processed=" + processed).add("latencySum=" + latencySum)
+                   .add("latencyMax=" + latencyMax).toString();
+    }
+
+}
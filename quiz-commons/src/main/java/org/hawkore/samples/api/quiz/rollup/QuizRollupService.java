@@ -0,0 +1,395 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.rollup;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.cache.Cache;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.EventType;
+import javax.cache.processor.EntryProcessor;
+import javax.cache.processor.MutableEntry;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CacheEntryEventSerializableFilter;
+import org.apache.ignite.cache.CacheEntryProcessor;
+import org.apache.ignite.cache.query.ContinuousQueryWithTransformer;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.lang.IgniteBiPredicate;
+import org.apache.ignite.lang.IgniteClosure;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.apache.ignite.services.Service;
+import org.apache.ignite.services.ServiceContext;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps per minute Quiz statistics on {@code quizRollup} cache up to date, see {@link QuizRollup}.
+ * <p>
+ * A continuous query on {@code quizCache} sends a small {@link QuizRollupBucket} (not the whole Quiz) for every
+ * stored Quiz, bucketed by processing minute ({@code pts}). Buckets are accumulated locally and merged into {@code
+ * quizRollup} every {@code flushInterval} milliseconds with an entry processor per minute, so rollup updates do not
+ * grow with Quizzes throughput.
+ * <p>
+ * Deploy it as a cluster singleton on server nodes (see {@code serviceConfiguration} on ignite-config.xml). Once
+ * buckets are flushed, minutes older than {@code lateness} milliseconds are considered complete and kept as a flushed
+ * watermark on {@code quizRollup} (see {@link QuizRollup#WATERMARK_KEY}). When service (re)starts, for example, after
+ * a failover, minutes from the watermark (all of them if there is none) are rebuilt from {@code quizCache}, so
+ * buckets pending on the previous singleton and Quizzes stored while it was redeployed are accounted. The continuous
+ * query is registered before the rebuild scan, and new Quizzes notified meanwhile are held until the scan ends and
+ * skipped if the scan already counted them. Quizzes stored more than {@code lateness} milliseconds after being
+ * processed ({@code pts}) could be missed on failover.
+ * <p>
+ * Quizzes are rolled up from {@code quizCache} into {@code quizRollup} of the current Quiz generation (see {@link
+ * QuizGenerations}). Once it changes, pending buckets are discarded and the new generation is followed.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizRollupService implements Service {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(QuizRollupService.class);
+    private static final long CACHE_POLL = 1000;
+
+    @IgniteInstanceResource
+    private transient Ignite ignite;
+    private String cacheName = "quizCache";
+    private long flushInterval = 1000;
+    private long lateness = 60000;
+    private transient Map<Long, QuizRollupBucket> pending;
+    private transient List<Created> rebuilding;
+
+    @Override
+    public void init(ServiceContext ctx) {
+        pending = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void execute(ServiceContext ctx) throws Exception {
+        while (!ctx.isCancelled()) {
+            long generation;
+            try {
+                generation = QuizGenerations.current();
+            } catch (IllegalStateException e) {
+                // cluster just activated, generation not read yet on this node
+                TimeUnit.MILLISECONDS.sleep(CACHE_POLL);
+                continue;
+            }
+            rollup(ctx, generation);
+        }
+    }
+
+    /*
+     * Rolls up Quizzes of the given generation, until service is cancelled or generation changes
+     */
+    private void rollup(ServiceContext ctx, long generation) throws InterruptedException {
+        String quizCacheName = QuizGenerations.name(cacheName, generation);
+        // Quizzes cache is started by Apache Ignite connector
+        IgniteCache<Long, Quiz> quizzes = ignite.cache(quizCacheName);
+        while (quizzes == null && !ctx.isCancelled() && QuizGenerations.current() == generation) {
+            TimeUnit.MILLISECONDS.sleep(CACHE_POLL);
+            quizzes = ignite.cache(quizCacheName);
+        }
+        if (quizzes == null || QuizGenerations.current() != generation) {
+            return;
+        }
+        IgniteCache<Long, QuizRollupBucket> rollup = ignite.cache(QuizGenerations.name(QuizRollup.CACHE_NAME,
+            generation));
+        IgniteCache<Long, Long> watermarks = ignite.cache(QuizGenerations.name(QuizRollup.CACHE_NAME, generation));
+        Long stored = watermarks.get(QuizRollup.WATERMARK_KEY);
+        long watermark = stored == null ? Long.MIN_VALUE : stored;
+        ContinuousQueryWithTransformer<Long, Quiz, Created> query = new ContinuousQueryWithTransformer<>();
+        query.setRemoteFilterFactory(new FactoryBuilder.SingletonFactory<>(new CreatedOnly()));
+        query.setRemoteTransformerFactory(new FactoryBuilder.SingletonFactory<>(new ToBucket()));
+        query.setLocalListener(created -> created.forEach(this::created));
+        synchronized (this) {
+            rebuilding = new ArrayList<>();
+        }
+        long registered = System.currentTimeMillis();
+        try (QueryCursor<Cache.Entry<Long, Quiz>> ignored = quizzes.query(query)) {
+            Set<Long> counted = rebuild(quizzes, rollup, watermark, registered - lateness);
+            synchronized (this) {
+                for (Created created : rebuilding) {
+                    if (!counted.contains(created.key)) {
+                        add(created.minute, created.bucket);
+                    }
+                }
+                rebuilding = null;
+            }
+            log.info("Quiz rollup started for {}, flush interval {} ms", quizCacheName, flushInterval);
+            while (!ctx.isCancelled() && QuizGenerations.current() == generation) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(flushInterval);
+                } catch (InterruptedException e) {
+                    // cancelled
+                    break;
+                }
+                watermark = flush(rollup, watermarks, watermark);
+            }
+        } finally {
+            synchronized (this) {
+                rebuilding = null;
+            }
+            if (QuizGenerations.current() == generation) {
+                flush(rollup, watermarks, watermark);
+            } else {
+                // all Quizzes of this generation were deleted
+                pending.clear();
+            }
+            log.info("Quiz rollup stopped for {}", quizCacheName);
+        }
+    }
+
+    /*
+     * Replaces minutes from the given one with the Quizzes stored on them, returns the keys of counted Quizzes
+     * processed from recentFrom, that could also be notified by the continuous query
+     */
+    private Set<Long> rebuild(IgniteCache<Long, Quiz> quizzes, IgniteCache<Long, QuizRollupBucket> rollup, long from,
+        long recentFrom) {
+        Map<Long, QuizRollupBucket> buckets = new HashMap<>();
+        Set<Long> counted = new HashSet<>();
+        long count = 0;
+        try (QueryCursor<Cache.Entry<Long, Quiz>> cursor = quizzes.query(new ScanQuery<>(new ProcessedFrom(from)))) {
+            for (Cache.Entry<Long, Quiz> entry : cursor) {
+                Quiz quiz = entry.getValue();
+                buckets.merge(QuizRollup.bucket(quiz.getPts()), QuizRollupBucket.of(quiz), QuizRollupBucket::merge);
+                if (quiz.getPts() >= recentFrom) {
+                    counted.add(entry.getKey());
+                }
+                count++;
+            }
+        }
+        // minutes partially flushed by a previous singleton, without Quizzes now (e.g. expired)
+        Set<Long> stale = new HashSet<>();
+        try (QueryCursor<Cache.Entry<Long, QuizRollupBucket>> cursor = rollup.query(
+            new ScanQuery<>(new MinuteFrom(from)))) {
+            for (Cache.Entry<Long, QuizRollupBucket> entry : cursor) {
+                if (!buckets.containsKey(entry.getKey())) {
+                    stale.add(entry.getKey());
+                }
+            }
+        }
+        rollup.putAll(buckets);
+        rollup.removeAll(stale);
+        log.info("Quiz rollup rebuilt with {} Quizzes, {} minutes from {}", count, buckets.size(),
+            from == Long.MIN_VALUE ? "the first one" : from);
+        return counted;
+    }
+
+    private void created(Created created) {
+        synchronized (this) {
+            if (rebuilding != null) {
+                rebuilding.add(created);
+                return;
+            }
+        }
+        add(created.minute, created.bucket);
+    }
+
+    @Override
+    public void cancel(ServiceContext ctx) {
+        // execute loop ends once cancelled
+    }
+
+    private void add(long minute, QuizRollupBucket bucket) {
+        pending.merge(minute, bucket, QuizRollupBucket::merge);
+    }
+
+    /*
+     * Merges pending buckets, then advances the flushed watermark, returns the current watermark
+     */
+    private long flush(IgniteCache<Long, QuizRollupBucket> rollup, IgniteCache<Long, Long> watermarks,
+        long watermark) {
+        long flushed = QuizRollup.bucket(System.currentTimeMillis() - lateness);
+        if (!pending.isEmpty()) {
+            Map<Long, EntryProcessor<Long, QuizRollupBucket, Void>> merges = new HashMap<>();
+            for (Long minute : pending.keySet()) {
+                QuizRollupBucket bucket = pending.remove(minute);
+                if (bucket != null) {
+                    merges.put(minute, new Merge(bucket));
+                }
+            }
+            try {
+                rollup.invokeAll(merges);
+            } catch (RuntimeException e) {
+                log.warn("Unable to update Quiz rollup, {} minutes will be retried: {}", merges.size(),
+                    e.getMessage());
+                merges.forEach((minute, merge) -> add(minute, ((Merge)merge).bucket));
+                return watermark;
+            }
+        }
+        if (flushed <= watermark) {
+            return watermark;
+        }
+        try {
+            watermarks.put(QuizRollup.WATERMARK_KEY, flushed);
+            return flushed;
+        } catch (RuntimeException e) {
+            log.warn("Unable to update Quiz rollup watermark: {}", e.getMessage());
+            return watermark;
+        }
+    }
+
+    /**
+     * Sets the cache Quizzes are stored into.
+     *
+     * @param cacheName
+     *     the cache name, defaults to quizCache
+     */
+    public void setCacheName(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * Sets the interval accumulated buckets are merged into {@code quizRollup}.
+     *
+     * @param flushInterval
+     *     the flush interval in milliseconds, defaults to 1000
+     */
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Sets the time a Quiz can take to be stored once processed, so minutes older than it are considered complete.
+     *
+     * @param lateness
+     *     the lateness in milliseconds, defaults to 60000
+     */
+    public void setLateness(long lateness) {
+        this.lateness = lateness;
+    }
+
+    /**
+     * Accepts only new Quizzes, Quizzes are never updated.
+     */
+    private static class CreatedOnly implements CacheEntryEventSerializableFilter<Long, Quiz> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean evaluate(CacheEntryEvent<? extends Long, ? extends Quiz> event) {
+            return event.getEventType() == EventType.CREATED;
+        }
+
+    }
+
+    /**
+     * Sends only the key, the minute and the bucket of a new Quiz.
+     */
+    private static class ToBucket
+        implements IgniteClosure<CacheEntryEvent<? extends Long, ? extends Quiz>, Created> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Created apply(CacheEntryEvent<? extends Long, ? extends Quiz> event) {
+            Quiz quiz = event.getValue();
+            return new Created(event.getKey(), QuizRollup.bucket(quiz.getPts()), QuizRollupBucket.of(quiz));
+        }
+
+    }
+
+    /**
+     * A new Quiz, as notified by the continuous query.
+     */
+    private static class Created implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final long key;
+        private final long minute;
+        private final QuizRollupBucket bucket;
+
+        private Created(long key, long minute, QuizRollupBucket bucket) {
+            this.key = key;
+            this.minute = minute;
+            this.bucket = bucket;
+        }
+
+    }
+
+    /**
+     * Quizzes processed from the given minute.
+     */
+    private static class ProcessedFrom implements IgniteBiPredicate<Long, Quiz> {
+
+        private static final long serialVersionUID = 1L;
+        private final long minute;
+
+        private ProcessedFrom(long minute) {
+            this.minute = minute;
+        }
+
+        @Override
+        public boolean apply(Long key, Quiz quiz) {
+            return QuizRollup.bucket(quiz.getPts()) >= minute;
+        }
+
+    }
+
+    /**
+     * Minutes of {@code quizRollup} from the given one, without the watermark.
+     */
+    private static class MinuteFrom implements IgniteBiPredicate<Long, QuizRollupBucket> {
+
+        private static final long serialVersionUID = 1L;
+        private final long minute;
+
+        private MinuteFrom(long minute) {
+            this.minute = minute;
+        }
+
+        @Override
+        public boolean apply(Long key, QuizRollupBucket bucket) {
+            return key != QuizRollup.WATERMARK_KEY && key >= minute;
+        }
+
+    }
+
+    /**
+     * Merges a bucket into a minute of {@code quizRollup}.
+     */
+    private static class Merge implements CacheEntryProcessor<Long, QuizRollupBucket, Void> {
+
+        private static final long serialVersionUID = 1L;
+        private final QuizRollupBucket bucket;
+
+        private Merge(QuizRollupBucket bucket) {
+            this.bucket = bucket;
+        }
+
+        @Override
+        public Void process(MutableEntry<Long, QuizRollupBucket> entry, Object... arguments) {
+            QuizRollupBucket current = entry.getValue();
+            entry.setValue(current == null ? bucket : current.merge(bucket));
+            return null;
+        }
+
+    }
+
+}
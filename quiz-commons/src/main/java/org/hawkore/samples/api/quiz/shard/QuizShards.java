@@ -0,0 +1,244 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicReference;
+import org.apache.ignite.cluster.ClusterNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Routing of Quizzes to shard queues ({@code QUIZS_QUEUE_0..N-1}) and assignment of shard queues to workers.
+ * <p>
+ * A surveyed email is always routed to the same shard, so Quizzes of the same surveyed are kept in order. Every shard
+ * is consumed by a single worker, chosen by rendezvous (highest random weight) hashing over the nodes with {@value
+ * #ROLE_ATTRIBUTE} attribute set to {@value #WORKER_ROLE}: when workers join or leave the cluster, only the shards
+ * of the affected workers move.
+ * <p>
+ * As every node computes the assignment from its own view of the topology, a worker only consumes an assigned shard
+ * while it holds the shard lease, a distributed atomic reference ({@code QUIZS_QUEUE_<n>_LEASE}) with the id of the
+ * owner node. A lease is taken once it is free or its owner has left the cluster, and it is released by its owner on
+ * its next drain after the shard is no longer assigned to it, that is, once the Quizzes it drained before were
+ * processed. So two workers never consume the same shard at the same time, and a moved shard is consumed by its new
+ * worker only after the previous one is done with it.
+ * <p>
+ * With a single shard, the queue name is not suffixed, so {@code QUIZS_QUEUE} is used as is.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class QuizShards {
+
+    /**
+     * Node attribute with the role of the node in the Quiz application
+     */
+    public static final String ROLE_ATTRIBUTE = "quiz.role";
+    /**
+     * Role of worker nodes, that consume shard queues
+     */
+    public static final String WORKER_ROLE = "worker";
+    private static final Logger log = LoggerFactory.getLogger(QuizShards.class);
+    private static final String LEASE_SUFFIX = "_LEASE";
+    private static final Set<String> leases = new HashSet<>();
+    private static volatile Assignment assignment;
+
+    private QuizShards() {
+    }
+
+    /**
+     * The shard of the given surveyed email.
+     *
+     * @param email
+     *     the surveyed email
+     * @param shards
+     *     the number of shards
+     * @return the shard, from 0 to shards - 1
+     */
+    public static int shard(String email, int shards) {
+        if (shards <= 1 || email == null) {
+            return 0;
+        }
+        return Math.floorMod(mix(email.hashCode()), shards);
+    }
+
+    /**
+     * The name of the shard queue of the given surveyed email.
+     *
+     * @param baseName
+     *     the base queue name (QUIZS_QUEUE)
+     * @param email
+     *     the surveyed email
+     * @param shards
+     *     the number of shards
+     * @return the shard queue name
+     */
+    public static String queueName(String baseName, String email, int shards) {
+        return shards <= 1 ? baseName : queueName(baseName, shard(email, shards));
+    }
+
+    /**
+     * The name of the given shard queue.
+     *
+     * @param baseName
+     *     the base queue name (QUIZS_QUEUE)
+     * @param shard
+     *     the shard
+     * @return the shard queue name
+     */
+    public static String queueName(String baseName, int shard) {
+        return baseName + "_" + shard;
+    }
+
+    /**
+     * The shards assigned to the local node, recalculated when cluster topology changes.
+     *
+     * @param ignite
+     *     the local Ignite node
+     * @param shards
+     *     the number of shards
+     * @return the assigned shards, empty if the local node is not a worker
+     */
+    public static List<Integer> assigned(Ignite ignite, int shards) {
+        long topologyVersion = ignite.cluster().topologyVersion();
+        Assignment current = assignment;
+        if (current == null || current.topologyVersion != topologyVersion || current.shards != shards) {
+            Collection<ClusterNode> workers = ignite.cluster().forAttribute(ROLE_ATTRIBUTE, WORKER_ROLE).nodes();
+            current = new Assignment(topologyVersion, shards,
+                assign(ignite.cluster().localNode(), workers, shards));
+            assignment = current;
+        }
+        return current.assigned;
+    }
+
+    /**
+     * The shards assigned to the local node whose lease is held by the local node. Leases of shards no longer assigned
+     * are released, and leases of assigned shards are taken if they are free or their owner has left the cluster.
+     * <p>
+     * Must be called before draining every batch, and only once the Quizzes of the previous batch were processed (one
+     * batch at a time per node), so leases are released only when their shards are done.
+     *
+     * @param ignite
+     *     the local Ignite node
+     * @param baseName
+     *     the base queue name (QUIZS_QUEUE)
+     * @param shards
+     *     the number of shards
+     * @return the leased shards, empty if the local node is not a worker
+     */
+    public static synchronized List<Integer> leased(Ignite ignite, String baseName, int shards) {
+        List<Integer> assigned = assigned(ignite, shards);
+        UUID local = ignite.cluster().localNode().id();
+        for (Iterator<String> it = leases.iterator(); it.hasNext(); ) {
+            String queueName = it.next();
+            if (!isAssigned(queueName, baseName, assigned)) {
+                lease(ignite, queueName).compareAndSet(local, null);
+                it.remove();
+                log.info("Released lease of {}", queueName);
+            }
+        }
+        List<Integer> leased = new ArrayList<>(assigned.size());
+        for (int shard : assigned) {
+            String queueName = queueName(baseName, shard);
+            if (leases.contains(queueName) || acquire(ignite, queueName, local)) {
+                leased.add(shard);
+            }
+        }
+        return Collections.unmodifiableList(leased);
+    }
+
+    private static boolean isAssigned(String queueName, String baseName, List<Integer> assigned) {
+        for (int shard : assigned) {
+            if (queueName(baseName, shard).equals(queueName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acquire(Ignite ignite, String queueName, UUID local) {
+        IgniteAtomicReference<UUID> lease = lease(ignite, queueName);
+        UUID owner = lease.get();
+        // free, or left by a node that is no longer in the cluster
+        boolean free = owner == null || ignite.cluster().node(owner) == null;
+        if (local.equals(owner) || (free && lease.compareAndSet(owner, local))) {
+            leases.add(queueName);
+            log.info("Took lease of {}", queueName);
+            return true;
+        }
+        log.debug("Waiting for {} to release lease of {}", owner, queueName);
+        return false;
+    }
+
+    private static IgniteAtomicReference<UUID> lease(Ignite ignite, String queueName) {
+        return ignite.atomicReference(queueName + LEASE_SUFFIX, null, true);
+    }
+
+    private static List<Integer> assign(ClusterNode local, Collection<ClusterNode> workers, int shards) {
+        List<Integer> assigned = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            ClusterNode owner = null;
+            int ownerWeight = 0;
+            for (ClusterNode worker : workers) {
+                int weight = mix(worker.consistentId().hashCode() ^ mix(shard + 1));
+                if (owner == null || weight > ownerWeight || (weight == ownerWeight
+                                                                  && worker.id().compareTo(owner.id()) > 0)) {
+                    owner = worker;
+                    ownerWeight = weight;
+                }
+            }
+            if (owner != null && owner.id().equals(local.id())) {
+                assigned.add(shard);
+            }
+        }
+        return Collections.unmodifiableList(assigned);
+    }
+
+    /*
+     * MurmurHash3 finalizer, spreads consecutive values (shards) and similar emails
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static class Assignment {
+
+        private final long topologyVersion;
+        private final int shards;
+        private final List<Integer> assigned;
+
+        private Assignment(long topologyVersion, int shards, List<Integer> assigned) {
+            this.topologyVersion = topologyVersion;
+            this.shards = shards;
+            this.assigned = assigned;
+        }
+
+    }
+
+}
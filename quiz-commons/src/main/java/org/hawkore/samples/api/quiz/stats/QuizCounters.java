@@ -0,0 +1,310 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.stats;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicLong;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.AtomicConfiguration;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.lifecycle.LifecycleEventType;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Quiz statistics counters (TOTAL_YES, TOTAL_PROC_QUIZS...), accumulated per node and periodically flushed as deltas
+ * to the cluster wide (REPLICATED) atomic longs, so increments do not contend on the cluster.
+ * <p>
+ * Pending deltas are flushed every {@code flushInterval} milliseconds, as soon as a counter accumulates {@code
+ * flushThreshold} increments and before the Ignite node stops.
+ * <p>
+ * Counters belong to the current Quiz generation (see {@link QuizGenerations}), so once all Quizzes are deleted,
+ * counters start again from 0 and pending deltas of the previous generation are discarded.
+ * <p>
+ * Register it into {@code lifecycleBeans} property of Ignite configuration (see ignite-config.xml).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizCounters implements LifecycleBean {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizCounters.class);
+    private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static volatile QuizCounters active;
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+    private long flushInterval = 1000;
+    private long flushThreshold = 1000;
+    private long readTtl = 1000;
+    private AtomicConfiguration atomicConfiguration = new AtomicConfiguration().setCacheMode(CacheMode.REPLICATED);
+    private ScheduledExecutorService scheduler;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    /**
+     * Increments locally the given counter by one.
+     *
+     * @param name
+     *     the counter (atomic long) name
+     * @return the approximate value of the counter, see {@link #approximate(String)}
+     */
+    public static long increment(String name) {
+        return add(name, 1);
+    }
+
+    /**
+     * Adds locally the given delta to the given counter.
+     *
+     * @param name
+     *     the counter (atomic long) name
+     * @param delta
+     *     the delta
+     * @return the approximate value of the counter, see {@link #approximate(String)}
+     */
+    public static long add(String name, long delta) {
+        QuizCounters current = current();
+        Counter counter = counter(name);
+        counter.pending.add(delta);
+        if (counter.pending.sum() >= current.flushThreshold) {
+            current.requestFlush();
+        }
+        return current.approximate(counter);
+    }
+
+    /**
+     * The approximate value of the given counter: last known cluster wide value (refreshed if older than {@code
+     * readTtl} milliseconds) plus deltas of this node not flushed yet.
+     * <p>
+     * Deltas not flushed yet by other nodes are not included, so it could be behind the real value up to {@code
+     * flushInterval} milliseconds.
+     *
+     * @param name
+     *     the counter (atomic long) name
+     * @return the approximate value
+     */
+    public static long approximate(String name) {
+        return current().approximate(counter(name));
+    }
+
+    /**
+     * Increments of the given counter on this node, not flushed yet to the cluster.
+     *
+     * @param name
+     *     the counter (atomic long) name
+     * @return the pending increments, 0 if counters are not started
+     */
+    public static long pending(String name) {
+        Counter counter = counters.get(QuizGenerations.name(name));
+        return counter == null ? 0 : counter.pending.sum();
+    }
+
+    /**
+     * The configuration of the atomic longs of counters.
+     *
+     * @return the atomic configuration
+     */
+    public static AtomicConfiguration atomicConfiguration() {
+        return current().atomicConfiguration;
+    }
+
+    /**
+     * Flushes pending deltas of all counters to the cluster.
+     */
+    public static void flush() {
+        QuizCounters current = active;
+        if (current != null) {
+            current.flushAll();
+        }
+    }
+
+    private static QuizCounters current() {
+        QuizCounters current = active;
+        if (current == null) {
+            throw new IllegalStateException("Quiz counters not started yet");
+        }
+        return current;
+    }
+
+    private static Counter counter(String name) {
+        long generation = QuizGenerations.current();
+        return counters.computeIfAbsent(QuizGenerations.name(name, generation), n -> new Counter(n, generation));
+    }
+
+    /**
+     * On lifecycle event.
+     *
+     * @param evt
+     *     the lifecycle event
+     */
+    @Override
+    public void onLifecycleEvent(LifecycleEventType evt) {
+        switch (evt) {
+            case AFTER_NODE_START:
+                scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "quiz-counters-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                scheduler.scheduleWithFixedDelay(this::flushAll, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+                active = this;
+                log.info("Quiz counters started, flush interval {} ms, flush threshold {}", flushInterval,
+                    flushThreshold);
+                break;
+            case BEFORE_NODE_STOP:
+                active = null;
+                scheduler.shutdownNow();
+                flushAll();
+                log.info("Quiz counters stopped");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flushAll);
+            } catch (RuntimeException e) {
+                // scheduler is shutting down, deltas will be flushed on node stop
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private void flushAll() {
+        flushRequested.set(false);
+        long generation;
+        try {
+            generation = QuizGenerations.current();
+        } catch (IllegalStateException e) {
+            // nothing incremented yet
+            return;
+        }
+        counters.forEach((name, counter) -> {
+            if (counter.generation < generation) {
+                // all Quizzes of previous generation were deleted
+                counters.remove(name, counter);
+            } else {
+                flush(name, counter);
+            }
+        });
+    }
+
+    private void flush(String name, Counter counter) {
+        synchronized (counter) {
+            // drain only what was summed, sumThenReset would lose increments added while resetting
+            long delta = counter.pending.sum();
+            if (delta == 0) {
+                return;
+            }
+            counter.pending.add(-delta);
+            try {
+                counter.global = atomic(name).addAndGet(delta);
+                counter.readAt = System.currentTimeMillis();
+            } catch (RuntimeException e) {
+                // keep delta for next flush
+                counter.pending.add(delta);
+                log.warn("Unable to flush {} pending increments of {}: {}", delta, name, e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Cluster wide value is read on first use, so it is never taken as 0 before the first flush
+     */
+    private long approximate(Counter counter) {
+        if (System.currentTimeMillis() - counter.readAt > readTtl) {
+            synchronized (counter) {
+                if (System.currentTimeMillis() - counter.readAt > readTtl) {
+                    counter.global = atomic(counter.name).get();
+                    counter.readAt = System.currentTimeMillis();
+                }
+            }
+        }
+        return counter.global + counter.pending.sum();
+    }
+
+    private IgniteAtomicLong atomic(String name) {
+        return ignite.atomicLong(name, atomicConfiguration, 0, true);
+    }
+
+    /**
+     * Sets the interval to flush pending deltas to the cluster.
+     *
+     * @param flushInterval
+     *     the flush interval in milliseconds, defaults to 1000
+     */
+    public void setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Sets the number of pending increments of a counter that triggers a flush before the flush interval elapses.
+     *
+     * @param flushThreshold
+     *     the flush threshold, defaults to 1000
+     */
+    public void setFlushThreshold(long flushThreshold) {
+        this.flushThreshold = flushThreshold;
+    }
+
+    /**
+     * Sets the max age of the cluster wide value returned by {@link #approximate(String)}.
+     *
+     * @param readTtl
+     *     the read time to live in milliseconds, defaults to 1000
+     */
+    public void setReadTtl(long readTtl) {
+        this.readTtl = readTtl;
+    }
+
+    /**
+     * Sets the configuration of the atomic longs, must match the one used by Apache Ignite connector (see
+     * global.xml).
+     *
+     * @param atomicConfiguration
+     *     the atomic configuration, defaults to REPLICATED
+     */
+    public void setAtomicConfiguration(AtomicConfiguration atomicConfiguration) {
+        this.atomicConfiguration = atomicConfiguration;
+    }
+
+    private static class Counter {
+
+        private final String name;
+        private final long generation;
+        private final LongAdder pending = new LongAdder();
+        private volatile long global;
+        private volatile long readAt;
+
+        private Counter(String name, long generation) {
+            this.name = name;
+            this.generation = generation;
+        }
+
+    }
+
+}
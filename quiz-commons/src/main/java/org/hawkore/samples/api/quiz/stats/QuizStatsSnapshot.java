@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.stats;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.ignite.Ignite;
+import org.hawkore.samples.api.quiz.cluster.QuizNode;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+
+/**
+ * Snapshot of all Quiz statistics counters, read in a single cluster round trip (see {@link QuizStatsTask}) and
+ * cached locally for a short time.
+ * <p>
+ * Concurrent requests for an expired snapshot share the same refresh (single flight), so cluster load does not grow
+ * with the number of clients polling stats. Snapshot is refreshed too once the current Quiz generation changes (see
+ * {@link QuizGenerations}), so stats are 0 right after all Quizzes are deleted.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public final class QuizStatsSnapshot {
+
+    /**
+     * Quiz statistics counters names
+     */
+    public static final String[] COUNTERS = {"TOTAL_YES", "TOTAL_NO", "TOTAL_NA", "TOTAL_REC_QUIZS", "TOTAL_PROC_QUIZS",
+        "TOTAL_DUPLICATED_QUIZS"};
+    private static final AtomicReference<CompletableFuture<Snapshot>> refreshing = new AtomicReference<>();
+    private static volatile Snapshot snapshot;
+
+    private QuizStatsSnapshot() {
+    }
+
+    /**
+     * Current statistics: cached cluster values, plus increments of this node not flushed yet.
+     *
+     * @param ttl
+     *     the max age of cached cluster values in milliseconds
+     * @return the counters values by name
+     */
+    public static Map<String, Long> get(long ttl) {
+        Snapshot current = snapshot;
+        if (current == null || current.generation != QuizGenerations.current()
+                || System.currentTimeMillis() - current.readAt > ttl) {
+            current = refresh();
+        }
+        Map<String, Long> values = new HashMap<>(current.values);
+        values.replaceAll((name, value) -> value + QuizCounters.pending(name));
+        return values;
+    }
+
+    /*
+     * Refresh snapshot, or wait for a refresh in progress.
+     */
+    private static Snapshot refresh() {
+        CompletableFuture<Snapshot> future = new CompletableFuture<>();
+        while (!refreshing.compareAndSet(null, future)) {
+            CompletableFuture<Snapshot> inProgress = refreshing.get();
+            if (inProgress != null) {
+                return inProgress.join();
+            }
+        }
+        try {
+            long generation = QuizGenerations.current();
+            Snapshot fetched = new Snapshot(fetch(generation), generation, System.currentTimeMillis());
+            snapshot = fetched;
+            future.complete(fetched);
+            return fetched;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            refreshing.set(null);
+        }
+    }
+
+    private static Map<String, Long> fetch(long generation) {
+        Ignite ignite = QuizNode.ignite();
+        if (ignite == null) {
+            throw new IllegalStateException("Ignite node not started yet");
+        }
+        String[] names = new String[COUNTERS.length];
+        for (int i = 0; i < COUNTERS.length; i++) {
+            names[i] = QuizGenerations.name(COUNTERS[i], generation);
+        }
+        Map<String, Long> fetched = ignite.compute(ignite.cluster().forServers().forRandom())
+                                        .call(new QuizStatsTask(QuizCounters.atomicConfiguration(), names));
+        // by counter name, without generation
+        Map<String, Long> values = new HashMap<>();
+        for (int i = 0; i < COUNTERS.length; i++) {
+            values.put(COUNTERS[i], fetched.get(names[i]));
+        }
+        return values;
+    }
+
+    private static class Snapshot {
+
+        private final Map<String, Long> values;
+        private final long generation;
+        private final long readAt;
+
+        private Snapshot(Map<String, Long> values, long generation, long readAt) {
+            this.values = Collections.unmodifiableMap(values);
+            this.generation = generation;
+            this.readAt = readAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.stats;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteAtomicLong;
+import org.apache.ignite.configuration.AtomicConfiguration;
+import org.apache.ignite.lang.IgniteCallable;
+import org.apache.ignite.resources.IgniteInstanceResource;
+
+/**
+ * Reads all Quiz statistics counters at once, with the atomic configuration of {@link QuizCounters}. Executed on a
+ * server node, where REPLICATED atomic longs are read locally.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizStatsTask implements IgniteCallable<Map<String, Long>> {
+
+    private static final long serialVersionUID = 1L;
+    private final AtomicConfiguration atomicConfiguration;
+    private final String[] names;
+
+    @IgniteInstanceResource
+    private transient Ignite ignite;
+
+    /**
+     * Instantiates a new Quiz stats task.
+     *
+     * @param atomicConfiguration
+     *     the configuration of the atomic longs, see {@link QuizCounters#atomicConfiguration()}
+     * @param names
+     *     the counters (atomic longs) names
+     */
+    public QuizStatsTask(AtomicConfiguration atomicConfiguration, String... names) {
+        this.atomicConfiguration = atomicConfiguration;
+        this.names = names;
+    }
+
+    /**
+     * Read counters.
+     *
+     * @return the counters values by name, 0 if a counter does not exist yet
+     */
+    @Override
+    public Map<String, Long> call() {
+        Map<String, Long> values = new HashMap<>();
+        for (String name : names) {
+            IgniteAtomicLong atomic = ignite.atomicLong(name, atomicConfiguration, 0, false);
+            values.put(name, atomic == null ? 0 : atomic.get());
+        }
+        return values;
+    }
+
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.store;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.CachePeekMode;
+import org.apache.ignite.cache.eviction.AbstractEvictionPolicyFactory;
+import org.apache.ignite.configuration.NearCacheConfiguration;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.lifecycle.LifecycleEventType;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.hawkore.samples.api.quiz.entities.Quiz;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+import org.hawkore.samples.api.quiz.metrics.QuizLatency;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Quiz lookups by id on client nodes (GET /quiz/{id}), optionally served from a local near cache of {@code
+ * quizCache}, so repeated reads of recent Quizzes do not reach server nodes.
+ * <p>
+ * Near cache is enabled with {@code nearConfiguration}, bounded by its eviction policy (for example, LRU with a max
+ * size). Quizzes are never updated, so near cached Quizzes are never stale. Hits (served from near cache) and misses
+ * (served by server nodes) are exposed as a JMX MBean {@value QuizLatency#DOMAIN}:type=NearCache,cache=... (see
+ * {@link QuizNearCacheMXBean}).
+ * <p>
+ * A near cache can only be started on a client node before the cache itself, so Quizzes cache must not be in {@code
+ * cacheConfiguration} of Ignite configuration. Register it into {@code lifecycleBeans} property of Ignite configuration
+ * (see ignite-config.xml), so the near cache of the current generation (see {@link QuizGenerations}) is started before
+ * Apache Ignite connector gets its cache instances. If Quizzes cache was already started on this node without near
+ * cache, the started cache is kept and Quizzes are read from server nodes.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizNearCache implements LifecycleBean, QuizNearCacheMXBean {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizNearCache.class);
+    private static volatile QuizNearCache active;
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+    private String cacheName = "quizCache";
+    private NearCacheConfiguration<Long, Quiz> nearConfiguration;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Lookup lookup;
+
+    /**
+     * Gets a Quiz by id, from near cache if enabled and the Quiz was recently read, otherwise from server nodes.
+     *
+     * @param id
+     *     the Quiz id
+     * @return the Quiz, null if not found
+     */
+    public static Quiz get(long id) {
+        QuizNearCache current = active;
+        if (current == null) {
+            throw new IllegalStateException("Quiz near cache not started yet");
+        }
+        return current.lookup(id);
+    }
+
+    private Quiz lookup(long id) {
+        Lookup current = opened(QuizGenerations.current());
+        if (current.near) {
+            Quiz quiz = current.cache.localPeek(id, CachePeekMode.NEAR);
+            if (quiz != null) {
+                hits.increment();
+                return quiz;
+            }
+        }
+        misses.increment();
+        // on near cache, keeps the Quiz for next lookups
+        return current.cache.get(id);
+    }
+
+    /*
+     * Quizzes cache of the given generation, opened once per generation
+     */
+    private Lookup opened(long generation) {
+        Lookup current = lookup;
+        if (current != null && current.generation == generation) {
+            return current;
+        }
+        synchronized (this) {
+            current = lookup;
+            if (current == null || current.generation != generation) {
+                current = open(generation);
+                lookup = current;
+            }
+            return current;
+        }
+    }
+
+    private Lookup open(long generation) {
+        String name = QuizGenerations.name(cacheName, generation);
+        if (nearConfiguration != null && ignite.configuration().isClientMode()) {
+            try {
+                IgniteCache<Long, Quiz> near = ignite.getOrCreateNearCache(name, nearConfiguration);
+                log.info("Quiz near cache started for {}, max size {}", name, getNearMaxSize());
+                return new Lookup(generation, near, true);
+            } catch (RuntimeException e) {
+                // for example, already started on this node without near cache, in use by Apache Ignite connector
+                log.warn("Unable to start Quiz near cache for {}, Quizzes will be read from server nodes: {}", name,
+                    e.getMessage());
+            }
+        }
+        IgniteCache<Long, Quiz> cache = ignite.cache(name);
+        if (cache == null) {
+            throw new IllegalStateException("Quizzes cache " + name + " not started yet");
+        }
+        return new Lookup(generation, cache, false);
+    }
+
+    /**
+     * On lifecycle event.
+     *
+     * @param evt
+     *     the lifecycle event
+     */
+    @Override
+    public void onLifecycleEvent(LifecycleEventType evt) {
+        switch (evt) {
+            case AFTER_NODE_START:
+                active = this;
+                try {
+                    opened(QuizGenerations.current());
+                } catch (RuntimeException e) {
+                    // for example, cluster is inactive yet
+                    log.warn("Quiz near cache will be started on first lookup: {}", e.getMessage());
+                }
+                register();
+                break;
+            case BEFORE_NODE_STOP:
+                active = null;
+                unregister();
+                log.info("Quiz near cache stopped, {} hits, {} misses", hits.sum(), misses.sum());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(this, name());
+        } catch (JMException e) {
+            log.warn("Unable to register Quiz near cache MBean: {}", e.getMessage());
+        }
+    }
+
+    private void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = name();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.debug("Unable to unregister Quiz near cache MBean: {}", e.getMessage());
+        }
+    }
+
+    private ObjectName name() throws JMException {
+        return new ObjectName(QuizLatency.DOMAIN + ":type=NearCache,cache=" + ObjectName.quote(cacheName));
+    }
+
+    @Override
+    public String getCacheName() {
+        return QuizGenerations.name(cacheName);
+    }
+
+    @Override
+    public boolean isNearEnabled() {
+        Lookup current = lookup;
+        return current != null && current.near;
+    }
+
+    @Override
+    public int getNearMaxSize() {
+        if (nearConfiguration != null
+                && nearConfiguration.getNearEvictionPolicyFactory() instanceof AbstractEvictionPolicyFactory) {
+            return ((AbstractEvictionPolicyFactory<?>)nearConfiguration.getNearEvictionPolicyFactory()).getMaxSize();
+        }
+        return 0;
+    }
+
+    @Override
+    public int getNearSize() {
+        Lookup current = lookup;
+        return current != null && current.near ? current.cache.localSize(CachePeekMode.NEAR) : 0;
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double)hit / total;
+    }
+
+    @Override
+    public void resetCounts() {
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Sets the cache Quizzes are stored into.
+     *
+     * @param cacheName
+     *     the cache name, defaults to quizCache
+     */
+    public void setCacheName(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * Sets the near cache configuration, on client nodes only.
+     *
+     * @param nearConfiguration
+     *     the near cache configuration, defaults to none (near cache disabled)
+     */
+    public void setNearConfiguration(NearCacheConfiguration<Long, Quiz> nearConfiguration) {
+        this.nearConfiguration = nearConfiguration;
+    }
+
+    private static class Lookup {
+
+        private final long generation;
+        private final IgniteCache<Long, Quiz> cache;
+        private final boolean near;
+
+        private Lookup(long generation, IgniteCache<Long, Quiz> cache, boolean near) {
+            this.generation = generation;
+            this.cache = cache;
+            this.near = near;
+        }
+
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.store;
+
+/**
+ * JMX view of Quiz lookups by id on a client node, see {@link QuizNearCache}.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public interface QuizNearCacheMXBean {
+
+    /**
+     * @return the Quizzes cache name of the current generation
+     */
+    String getCacheName();
+
+    /**
+     * @return true if Quizzes are kept on a local near cache
+     */
+    boolean isNearEnabled();
+
+    /**
+     * @return the max number of Quizzes kept on the near cache, 0 if unbounded or disabled
+     */
+    int getNearMaxSize();
+
+    /**
+     * @return the number of Quizzes currently kept on the near cache
+     */
+    int getNearSize();
+
+    /**
+     * @return the number of lookups served from the near cache
+     */
+    long getHits();
+
+    /**
+     * @return the number of lookups served by server nodes
+     */
+    long getMisses();
+
+    /**
+     * @return the ratio of lookups served from the near cache, 0 if there were no lookups
+     */
+    double getHitRatio();
+
+    /**
+     * Resets hits and misses.
+     */
+    void resetCounts();
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.store;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteDataStreamer;
+import org.apache.ignite.lifecycle.LifecycleBean;
+import org.apache.ignite.lifecycle.LifecycleEventType;
+import org.apache.ignite.resources.IgniteInstanceResource;
+import org.hawkore.samples.api.quiz.generation.QuizGenerations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams Quizzes into {@code quizCache} with an {@link IgniteDataStreamer}, so Quizzes are sent to server nodes in
+ * batches per node instead of one cache update per Quiz.
+ * <p>
+ * Buffered Quizzes are sent when a per node buffer is full, every {@code autoFlushFrequency} milliseconds and before
+ * the Ignite node stops.
+ * <p>
+ * Quizzes are streamed into {@code quizCache} of the current Quiz generation (see {@link QuizGenerations}). Once it
+ * changes, a new streamer is opened, and Quizzes still buffered for the previous generation are discarded, they are
+ * deleted too.
+ * <p>
+ * Register it into {@code lifecycleBeans} property of Ignite configuration (see ignite-config.xml).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizStreamer implements LifecycleBean {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizStreamer.class);
+    private static volatile QuizStreamer active;
+
+    @IgniteInstanceResource
+    private Ignite ignite;
+    private String cacheName = "quizCache";
+    private int perNodeBufferSize = IgniteDataStreamer.DFLT_PER_NODE_BUFFER_SIZE;
+    private int perNodeParallelOperations = 0;
+    private long autoFlushFrequency = 1000;
+    private boolean allowOverwrite = false;
+    private volatile Stream stream;
+
+    /**
+     * Adds the given Quiz to the stream.
+     *
+     * @param id
+     *     the Quiz id
+     * @param quiz
+     *     the Quiz
+     */
+    public static void store(long id, Object quiz) {
+        QuizStreamer current = active;
+        if (current == null) {
+            throw new IllegalStateException("Quiz streamer not started yet");
+        }
+        Stream stream = current.stream(QuizGenerations.current());
+        try {
+            stream.streamer.addData(id, quiz);
+        } catch (IllegalStateException e) {
+            if (stream.generation == QuizGenerations.current()) {
+                throw e;
+            }
+            // streamer closed by a new generation, so Quiz is already deleted
+            log.debug("Quiz {} discarded, Quiz generation {} has been deleted", id, stream.generation);
+        }
+    }
+
+    /*
+     * Streamer of the given generation, lazily opened, a previous generation streamer is replaced
+     */
+    private Stream stream(long generation) {
+        Stream current = stream;
+        if (current != null && current.generation >= generation) {
+            return current;
+        }
+        synchronized (this) {
+            current = stream;
+            if (current == null || current.generation < generation) {
+                if (current != null) {
+                    current.streamer.close(true);
+                }
+                current = open(generation);
+                stream = current;
+            }
+            return current;
+        }
+    }
+
+    private Stream open(long generation) {
+        String name = QuizGenerations.name(cacheName, generation);
+        IgniteDataStreamer<Long, Object> streamer = ignite.dataStreamer(name);
+        streamer.perNodeBufferSize(perNodeBufferSize);
+        if (perNodeParallelOperations > 0) {
+            streamer.perNodeParallelOperations(perNodeParallelOperations);
+        }
+        streamer.autoFlushFrequency(autoFlushFrequency);
+        streamer.allowOverwrite(allowOverwrite);
+        log.info("Quiz streamer started for {}, per node buffer size {}, auto flush frequency {} ms", name,
+            perNodeBufferSize, autoFlushFrequency);
+        return new Stream(generation, streamer);
+    }
+
+    /**
+     * On lifecycle event.
+     *
+     * @param evt
+     *     the lifecycle event
+     */
+    @Override
+    public void onLifecycleEvent(LifecycleEventType evt) {
+        switch (evt) {
+            case AFTER_NODE_START:
+                active = this;
+                break;
+            case BEFORE_NODE_STOP:
+                active = null;
+                synchronized (this) {
+                    if (stream != null) {
+                        // flushes buffered Quizzes
+                        stream.streamer.close(false);
+                        log.info("Quiz streamer stopped");
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Sets the cache to stream Quizzes into.
+     *
+     * @param cacheName
+     *     the cache name, defaults to quizCache
+     */
+    public void setCacheName(String cacheName) {
+        this.cacheName = cacheName;
+    }
+
+    /**
+     * Sets the number of Quizzes buffered per server node before they are sent.
+     *
+     * @param perNodeBufferSize
+     *     the per node buffer size, defaults to 512
+     */
+    public void setPerNodeBufferSize(int perNodeBufferSize) {
+        this.perNodeBufferSize = perNodeBufferSize;
+    }
+
+    /**
+     * Sets the max number of concurrent batches sent to a server node.
+     *
+     * @param perNodeParallelOperations
+     *     the per node parallel operations, defaults to Ignite default (based on server node's data streamer thread
+     *     pool size)
+     */
+    public void setPerNodeParallelOperations(int perNodeParallelOperations) {
+        this.perNodeParallelOperations = perNodeParallelOperations;
+    }
+
+    /**
+     * Sets the max time a Quiz can be buffered before being sent.
+     *
+     * @param autoFlushFrequency
+     *     the auto flush frequency in milliseconds, defaults to 1000
+     */
+    public void setAutoFlushFrequency(long autoFlushFrequency) {
+        this.autoFlushFrequency = autoFlushFrequency;
+    }
+
+    /**
+     * Sets whether existing Quizzes can be overwritten. When disabled, streamer uses a faster path that is only
+     * valid if Quizzes are not updated concurrently by other means.
+     *
+     * @param allowOverwrite
+     *     the allow overwrite flag, defaults to false
+     */
+    public void setAllowOverwrite(boolean allowOverwrite) {
+        this.allowOverwrite = allowOverwrite;
+    }
+
+    private static class Stream {
+
+        private final long generation;
+        private final IgniteDataStreamer<Long, Object> streamer;
+
+        private Stream(long generation, IgniteDataStreamer<Long, Object> streamer) {
+            this.generation = generation;
+            this.streamer = streamer;
+        }
+
+    }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.samples.api.quiz.generation;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.Ignition;
+import org.apache.ignite.cache.CacheMode;
+import org.apache.ignite.configuration.AtomicConfiguration;
+import org.apache.ignite.configuration.CacheConfiguration;
+import org.apache.ignite.configuration.IgniteConfiguration;
+import org.apache.ignite.spi.discovery.tcp.TcpDiscoverySpi;
+import org.apache.ignite.spi.discovery.tcp.ipfinder.vm.TcpDiscoveryVmIpFinder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Truncate and retirement of Quiz generations, on a single in-memory node.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class QuizGenerationsTest {
+
+    private static final long RETIRE_DELAY = 200;
+    private static final long TIMEOUT = 10000;
+    private static final AtomicConfiguration ATOMICS = new AtomicConfiguration().setCacheMode(CacheMode.REPLICATED);
+    private Ignite ignite;
+
+    @Before
+    public void start() {
+        QuizGenerations generations = new QuizGenerations();
+        generations.setRetireDelay(RETIRE_DELAY);
+        TcpDiscoveryVmIpFinder ipFinder = new TcpDiscoveryVmIpFinder();
+        ipFinder.setAddresses(Collections.singletonList("127.0.0.1:47500..47509"));
+        IgniteConfiguration config = new IgniteConfiguration();
+        config.setIgniteInstanceName("quiz-generations-test");
+        config.setDiscoverySpi(new TcpDiscoverySpi().setIpFinder(ipFinder));
+        config.setCacheConfiguration(new CacheConfiguration<>("quizCache"), new CacheConfiguration<>("quizEmailIndex"),
+            new CacheConfiguration<>("quizRollup"));
+        config.setLifecycleBeans(generations);
+        ignite = Ignition.start(config);
+        await(() -> QuizGenerations.active().generations() != null);
+    }
+
+    @After
+    public void stop() {
+        Ignition.stop(ignite.name(), true);
+    }
+
+    @Test
+    public void truncateSwitchesToNextGeneration() {
+        assertEquals(0, QuizGenerations.current());
+        ignite.atomicLong("TOTAL_PROC_QUIZS", ATOMICS, 5, true);
+        ignite.cache("quizCache").put(1L, "quiz");
+
+        Map<String, Object> result = QuizGenerations.truncate();
+
+        assertEquals(1L, result.get("generation"));
+        assertEquals(5L, result.get("deleted"));
+        assertEquals(1, QuizGenerations.current());
+        assertEquals("quizCache_1", QuizGenerations.name("quizCache"));
+        assertNotNull(ignite.cache("quizCache_1"));
+        assertEquals(0, ignite.cache("quizCache_1").size());
+    }
+
+    @Test
+    public void truncateFollowsGenerationSwitchedByOtherNode() {
+        IgniteCache<String, Long> generations = ignite.cache(QuizGenerations.CACHE_NAME);
+        generations.put("current", 3L);
+        await(() -> QuizGenerations.current() == 3);
+
+        // a stale switch, for example, from a node that did not see generation 3 yet, is rejected
+        assertFalse(QuizGenerations.active().switchTo(generations, 0, 1));
+        assertEquals(3L, (long)generations.get("current"));
+
+        Map<String, Object> result = QuizGenerations.truncate();
+
+        assertEquals(4L, result.get("generation"));
+        assertEquals(4L, (long)generations.get("current"));
+        assertEquals(4, QuizGenerations.current());
+    }
+
+    @Test
+    public void truncateIsRejectedWhileMigrating() {
+        ignite.cache(QuizGenerations.CACHE_NAME).put(QuizMigration.MIGRATION_KEY, 1L);
+        try {
+            QuizGenerations.truncate();
+            fail("Truncate must be rejected while Quiz data is migrated");
+        } catch (IllegalStateException e) {
+            assertEquals(0, QuizGenerations.current());
+        }
+    }
+
+    @Test
+    public void retireDestroysPreviousGeneration() {
+        ignite.atomicLong("TOTAL_YES", ATOMICS, 2, true);
+        ignite.cache("quizCache").put(1L, "quiz");
+
+        QuizGenerations.truncate();
+
+        await(() -> ignite.cache("quizCache") == null);
+        await(() -> ignite.cache("quizEmailIndex") == null && ignite.cache("quizRollup") == null);
+        await(() -> ignite.atomicLong("TOTAL_YES", ATOMICS, 0, false) == null);
+        assertNull(ignite.atomicLong("TOTAL_YES_1", ATOMICS, 0, false));
+        assertNotNull(ignite.cache("quizCache_1"));
+    }
+
+    @Test
+    public void retireCarriesOverMigratedGeneration() {
+        IgniteCache<String, Long> generations = ignite.cache(QuizGenerations.CACHE_NAME);
+        ignite.atomicLong("TOTAL_YES", ATOMICS, 2, true);
+        ignite.cache("quizCache").put(1L, "quiz");
+        // as left by QuizMigration once caches of generation 1 are populated
+        generations.put(QuizMigration.MIGRATED_KEY_PREFIX + 0, 1L);
+
+        QuizGenerations.truncate();
+        // stored into generation 0 by a node that did not switch yet
+        ignite.cache("quizCache").put(2L, "late quiz");
+
+        await(() -> ignite.cache("quizCache") == null);
+        IgniteCache<Object, Object> migrated = ignite.cache("quizCache_1");
+        assertEquals("quiz", migrated.get(1L));
+        assertEquals("late quiz", migrated.get(2L));
+        assertEquals(2, ignite.atomicLong("TOTAL_YES_1", ATOMICS, 0, false).get());
+        assertFalse(generations.containsKey(QuizMigration.MIGRATED_KEY_PREFIX + 0));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            assertTrue("Condition not met in " + TIMEOUT + " ms", System.currentTimeMillis() < deadline);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail("Interrupted");
+            }
+        }
+    }
+
+}
@@ -15,19 +15,15 @@
  */
 package org.hawkore.springframework.boot.admin.cluster;
 
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.concurrent.locks.Lock;
-import java.util.function.BinaryOperator;
+import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import de.codecentric.boot.admin.server.domain.events.InstanceEvent;
 import de.codecentric.boot.admin.server.domain.values.InstanceId;
@@ -35,83 +31,87 @@ import de.codecentric.boot.admin.server.eventstore.InstanceEventPublisher;
 import de.codecentric.boot.admin.server.eventstore.InstanceEventStore;
 import de.codecentric.boot.admin.server.eventstore.OptimisticLockingException;
 import javax.cache.Cache.Entry;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.event.CacheEntryEvent;
 import javax.cache.event.EventType;
+import javax.cache.processor.EntryProcessorException;
+import org.apache.ignite.Ignite;
 import org.apache.ignite.IgniteCache;
-import org.apache.ignite.cache.query.ContinuousQuery;
+import org.apache.ignite.cache.CacheEntryEventSerializableFilter;
+import org.apache.ignite.cache.query.ContinuousQueryWithTransformer;
 import org.apache.ignite.cache.query.QueryCursor;
 import org.apache.ignite.cache.query.ScanQuery;
 import org.apache.ignite.internal.util.typedef.internal.U;
+import org.apache.ignite.lang.IgniteClosure;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import static java.util.Comparator.comparing;
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.reducing;
-
 /**
  * Event-Store backed by a Apache IgniteCache for Spring Boot Admin storage over cluster
  * <p>
  * Just an adaptation of de.codecentric.boot.admin.server.eventstore.ConcurrentMapEventStore
+ * <p>
+ * Each event is stored as an entry keyed by instance id and version ({@link InstanceEventKey}), and each instance has a
+ * small head record with the versions of its stored events ({@link InstanceEventLogHead}), so appends only write new
+ * events and the head, instead of the whole event log of the instance.
+ * <p>
+ * An append is a single entry operation on the head ({@link InstanceEventLogAppender}), then a write of its new events.
+ * <p>
+ * Appends do not compact events, event logs are compacted in background by {@link IgniteEventStoreCompactor}.
  *
  * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
  */
 public class IgniteEventStore extends InstanceEventPublisher implements InstanceEventStore, DisposableBean {
 
     private static final Logger log = LoggerFactory.getLogger(IgniteEventStore.class);
-    private final QueryCursor<Entry<Serializable, Serializable>> continuousQueryCursor;
-    private final int maxLogSizePerAggregate;
-    private final IgniteCache<String, List<InstanceEvent>> eventLogCache;
+    private static final int PAGE_SIZE = 256;
+    private final QueryCursor<Entry<InstanceEventKey, InstanceEvent>> continuousQueryCursor;
+    private final IgniteCache<InstanceEventKey, InstanceEvent> eventLogCache;
+    private final IgniteCache<String, InstanceEventLogHead> eventLogHeadCache;
     private static final Comparator<InstanceEvent> byTimestampAndIdAndVersion = comparing(InstanceEvent::getTimestamp)
                                                                                     .thenComparing(
                                                                                         InstanceEvent::getInstance)
                                                                                     .thenComparing(
                                                                                         InstanceEvent::getVersion);
+    private static final Comparator<EventRef> byRefTimestampAndIdAndVersion = Comparator.<EventRef>comparingLong(
+        ref -> ref.timestamp).thenComparing(ref -> ref.key.getInstanceId()).thenComparingLong(
+        ref -> ref.key.getVersion());
 
     /**
      * Instantiates a new Ignite event store.
      *
-     * @param eventLogs
-     *     the event logs
+     * @param eventLogCache
+     *     the events, by instance id and version
+     * @param eventLogHeadCache
+     *     the event log heads, by instance id
      */
-    public IgniteEventStore(IgniteCache<String, List<InstanceEvent>> eventLogCache) {
-        this(100, eventLogCache);
-    }
-
-    /**
-     * Instantiates a new Ignite event store.
-     *
-     * @param maxLogSizePerAggregate
-     *     the max log size per aggregate
-     * @param eventLogMap
-     *     the event log
-     */
-    public IgniteEventStore(int maxLogSizePerAggregate, IgniteCache<String, List<InstanceEvent>> eventLogCache) {
-        this.maxLogSizePerAggregate = maxLogSizePerAggregate;
+    public IgniteEventStore(IgniteCache<InstanceEventKey, InstanceEvent> eventLogCache,
+        IgniteCache<String, InstanceEventLogHead> eventLogHeadCache) {
         this.eventLogCache = eventLogCache;
+        this.eventLogHeadCache = eventLogHeadCache;
 
         // create a monitor to update events on local instance from cluster udpates
         try {
-            // Creating a continuous query.
-            ContinuousQuery<Serializable, Serializable> qry = new ContinuousQuery<>();
-            // Setting an optional initial query.
-            qry.setInitialQuery(new ScanQuery<Serializable, Serializable>());
+            // Creating a continuous query, without initial query as stored events are read with findAll.
+            ContinuousQueryWithTransformer<InstanceEventKey, InstanceEvent, InstanceEvent> qry
+                = new ContinuousQueryWithTransformer<>();
+            // Remote filter and transformer, so only new events are sent to this node, without keys or old values.
+            qry.setRemoteFilterFactory(FactoryBuilder.factoryOf(new NewEventFilter()));
+            qry.setRemoteTransformerFactory(FactoryBuilder.factoryOf(new NewEventTransformer()));
             // Local listener that is called locally when an update notification is received.
             qry.setLocalListener((evts) -> {
-                evts.forEach(e -> {
-                    if (e.getEventType().equals(EventType.UPDATED) || e.getEventType().equals(EventType.CREATED)) {
-                        List<InstanceEvent> newEvents = (List<InstanceEvent>)e.getValue();
-                        List<InstanceEvent> oldEvents = (List<InstanceEvent>)e.getOldValue();
-                        long lastKnownVersion = oldEvents == null ? -1 : getLastVersion(oldEvents);
-                        newEvents = newEvents.stream().filter(ev -> ev.getVersion() > lastKnownVersion)
-                                        .collect(Collectors.toList());
-                        if (!newEvents.isEmpty()) {
-                            IgniteEventStore.this.publish(newEvents);
-                        }
-                    }
-                });
+                List<InstanceEvent> newEvents = new ArrayList<>();
+                evts.forEach(newEvents::add);
+                if (!newEvents.isEmpty()) {
+                    newEvents.sort(byTimestampAndIdAndVersion);
+                    IgniteEventStore.this.publish(newEvents);
+                }
             });
             // Executing the continuous query and preserve cursor without close it
             this.continuousQueryCursor = this.eventLogCache.query(qry);
@@ -122,19 +122,84 @@ public class IgniteEventStore extends InstanceEventPublisher implements Instance
 
     /**
      * Find all flux.
+     * <p>
+     * Partitions are scanned in parallel segments (every n-th partition). Each segment only sorts references to its
+     * events, taken from event log heads, and reads events lazily, a page at a time, as they are consumed. Segments
+     * are merged in order, so all events are never loaded at once.
      *
      * @return the flux
      */
     @Override
     public Flux<InstanceEvent> findAll() {
         return Flux.defer(() -> {
-            HashMap<String, List<InstanceEvent>> map = new HashMap<>();
-            eventLogCache.forEach(e -> map.put(e.getKey(), e.getValue()));
-            return Flux.fromIterable(map.values()).flatMapIterable(Function.identity())
-                       .sort(byTimestampAndIdAndVersion);
+            int partitions = eventLogHeadCache.unwrap(Ignite.class).affinity(eventLogHeadCache.getName()).partitions();
+            int segments = Math.min(partitions, Schedulers.DEFAULT_POOL_SIZE);
+            List<Publisher<InstanceEvent>> scans = new ArrayList<>(segments);
+            for (int segment = 0; segment < segments; segment++) {
+                int first = segment;
+                scans.add(Mono.fromCallable(() -> scan(first, segments, partitions))
+                              .subscribeOn(Schedulers.boundedElastic())
+                              .flatMapMany(Flux::fromIterable)
+                              .concatMap(page -> Mono.fromCallable(() -> read(page))
+                                                     .subscribeOn(Schedulers.boundedElastic()), 1)
+                              .flatMapIterable(Function.identity()));
+            }
+            return Flux.mergeOrdered(PAGE_SIZE, byTimestampAndIdAndVersion, toArray(scans));
         });
     }
 
+    @SuppressWarnings("unchecked")
+    private static Publisher<InstanceEvent>[] toArray(List<Publisher<InstanceEvent>> publishers) {
+        return (Publisher<InstanceEvent>[])publishers.toArray(new Publisher<?>[0]);
+    }
+
+    /*
+     * Pages of keys of events on every step-th partition from the first one, sorted as events by their head
+     * timestamps (epoch millis), instance id and version. Pages only end between different timestamps, so events
+     * with the same timestamp but different nanos are sorted once read
+     */
+    private List<List<InstanceEventKey>> scan(int first, int step, int partitions) {
+        List<EventRef> refs = new ArrayList<>();
+        for (int partition = first; partition < partitions; partition += step) {
+            try (QueryCursor<Entry<String, InstanceEventLogHead>> cursor = eventLogHeadCache.query(
+                new ScanQuery<String, InstanceEventLogHead>(partition, null))) {
+                cursor.forEach(e -> {
+                    long[] versions = e.getValue().getVersions();
+                    long[] timestamps = e.getValue().getTimestamps();
+                    for (int i = 0; i < versions.length; i++) {
+                        refs.add(new EventRef(new InstanceEventKey(e.getKey(), versions[i]), timestamps[i]));
+                    }
+                });
+            }
+        }
+        refs.sort(byRefTimestampAndIdAndVersion);
+        List<List<InstanceEventKey>> pages = new ArrayList<>();
+        List<InstanceEventKey> page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < refs.size(); i++) {
+            page.add(refs.get(i).key);
+            boolean lastOfTimestamp = i == refs.size() - 1 || refs.get(i).timestamp != refs.get(i + 1).timestamp;
+            if (page.size() >= PAGE_SIZE && lastOfTimestamp) {
+                pages.add(page);
+                page = new ArrayList<>(PAGE_SIZE);
+            }
+        }
+        if (!page.isEmpty()) {
+            pages.add(page);
+        }
+        return pages;
+    }
+
+    /*
+     * Events of a page of keys, sorted, with a single read
+     */
+    private List<InstanceEvent> read(List<InstanceEventKey> page) {
+        Map<InstanceEventKey, InstanceEvent> stored = eventLogCache.getAll(new LinkedHashSet<>(page));
+        // compacted meanwhile are missing
+        List<InstanceEvent> events = new ArrayList<>(stored.values());
+        events.sort(byTimestampAndIdAndVersion);
+        return events;
+    }
+
     /**
      * Find flux.
      *
@@ -145,9 +210,9 @@ public class IgniteEventStore extends InstanceEventPublisher implements Instance
     @Override
     public Flux<InstanceEvent> find(InstanceId id) {
         return Flux.defer(() -> {
-            List<InstanceEvent> events = eventLogCache.get(id.getValue());
-            if (events != null) {
-                return Flux.fromIterable(events);
+            InstanceEventLogHead head = eventLogHeadCache.get(id.getValue());
+            if (head != null) {
+                return Flux.fromIterable(read(id.getValue(), head));
             }
             return Flux.fromIterable(Collections.emptyList());
         });
@@ -176,63 +241,94 @@ public class IgniteEventStore extends InstanceEventPublisher implements Instance
             throw new IllegalArgumentException("'events' must only refer to the same instance.");
         }
 
-        // create a distributed lock per instance Id
-        Lock lock = eventLogCache.lock(instanceId);
+        Map<InstanceEventKey, InstanceEvent> newEvents = new LinkedHashMap<>();
+        for (InstanceEvent event : events) {
+            newEvents.put(InstanceEventKey.of(event), event);
+        }
 
+        // version check and append to the head in one entry operation, executed on the primary node of the head: only
+        // the append that wins the head writes its versions, so new events are written afterwards, no other append
+        // writes them. Readers skip versions whose events are not written yet (or were never written if this node
+        // failed meanwhile, until they are compacted once superseded)
+        InstanceEventLogHead head;
         try {
-            lock.lock();
-
-            List<InstanceEvent> oldEvents = Optional.ofNullable(eventLogCache.get(instanceId))
-                                                .orElse(new ArrayList<>(maxLogSizePerAggregate + 1));
-
-            long lastVersion = getLastVersion(oldEvents);
-
-            if (lastVersion >= events.get(0).getVersion()) {
-                throw createOptimisticLockException(events.get(0), lastVersion);
+            head = eventLogHeadCache.invoke(instanceId, new InstanceEventLogAppender(events));
+        } catch (EntryProcessorException e) {
+            if (e.getCause() instanceof OptimisticLockingException) {
+                throw (OptimisticLockingException)e.getCause();
             }
+            throw e;
+        }
+        eventLogCache.putAll(newEvents);
 
-            List<InstanceEvent> newEvents = new ArrayList<>(oldEvents);
-            newEvents.addAll(events);
+        if (log.isDebugEnabled()) {
+            log.debug("Events appended to log {}, {}", events, head);
+        }
+        return true;
+    }
 
-            if (newEvents.size() > maxLogSizePerAggregate) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Threshold for {} reached. Compacting events", instanceId);
-                }
-                compact(newEvents);
+    /*
+     * Events of an instance, ascending by version, with a single read of all its stored versions
+     */
+    private List<InstanceEvent> read(String instanceId, InstanceEventLogHead head) {
+        Set<InstanceEventKey> keys = new LinkedHashSet<>();
+        for (long version : head.getVersions()) {
+            keys.add(new InstanceEventKey(instanceId, version));
+        }
+        Map<InstanceEventKey, InstanceEvent> stored = eventLogCache.getAll(keys);
+        List<InstanceEvent> events = new ArrayList<>(stored.size());
+        for (InstanceEventKey key : keys) {
+            InstanceEvent event = stored.get(key);
+            // compacted meanwhile
+            if (event != null) {
+                events.add(event);
             }
+        }
+        return events;
+    }
 
-            if (oldEvents.equals(newEvents)) {
-                if (log.isDebugEnabled()) {
-                    log.debug("No new events to append {} ", events);
-                }
-                return false;
-            }
+    /*
+     * Reference to a stored event, with its timestamp (epoch millis) from the event log head
+     */
+    private static class EventRef {
 
-            eventLogCache.put(instanceId, newEvents);
+        private final InstanceEventKey key;
+        private final long timestamp;
 
-            if (log.isDebugEnabled()) {
-                log.debug("Events appended to log {}", events);
-            }
-            return true;
-        } finally {
-            lock.unlock();
+        private EventRef(InstanceEventKey key, long timestamp) {
+            this.key = key;
+            this.timestamp = timestamp;
         }
-    }
 
-    private void compact(List<InstanceEvent> events) {
-        BinaryOperator<InstanceEvent> latestEvent = (e1, e2) -> e1.getVersion() > e2.getVersion() ? e1 : e2;
-        Map<Class<?>, Optional<InstanceEvent>> latestPerType = events.stream().collect(
-            groupingBy(InstanceEvent::getClass, reducing(latestEvent)));
-        events.removeIf((e) -> !Objects.equals(e, latestPerType.get(e.getClass()).orElse(null)));
     }
 
-    private OptimisticLockingException createOptimisticLockException(InstanceEvent event, long lastVersion) {
-        return new OptimisticLockingException(
-            "Verison " + event.getVersion() + " was overtaken by " + lastVersion + " for " + event.getInstance());
+    /*
+     * Events are never updated, so created entries are new events (removed ones are compacted events)
+     */
+    private static class NewEventFilter implements CacheEntryEventSerializableFilter<InstanceEventKey, InstanceEvent> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public boolean evaluate(CacheEntryEvent<? extends InstanceEventKey, ? extends InstanceEvent> event) {
+            return event.getEventType() == EventType.CREATED;
+        }
+
     }
 
-    protected static long getLastVersion(List<InstanceEvent> events) {
-        return events.isEmpty() ? -1 : events.get(events.size() - 1).getVersion();
+    /*
+     * Just the new event
+     */
+    private static class NewEventTransformer
+        implements IgniteClosure<CacheEntryEvent<? extends InstanceEventKey, ? extends InstanceEvent>, InstanceEvent> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public InstanceEvent apply(CacheEntryEvent<? extends InstanceEventKey, ? extends InstanceEvent> event) {
+            return event.getValue();
+        }
+
     }
 
     /**
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.springframework.boot.admin.cluster;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.codecentric.boot.admin.server.domain.events.InstanceEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import javax.cache.Cache.Entry;
+import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
+import org.apache.ignite.cache.query.QueryCursor;
+import org.apache.ignite.cache.query.ScanQuery;
+import org.apache.ignite.transactions.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import static org.apache.ignite.transactions.TransactionConcurrency.PESSIMISTIC;
+import static org.apache.ignite.transactions.TransactionIsolation.REPEATABLE_READ;
+
+/**
+ * Background compaction of event logs stored by {@link IgniteEventStore}, so appends never compact events.
+ * <p>
+ * On each run, every Spring Boot Admin server node compacts event logs on its own primary partitions, a few partitions
+ * at a time (up to {@code maxHeadsPerRun} compacted event logs per run, continuing on next run from where it stopped).
+ * An event log is compacted when it has more than {@code maxLogSizePerAggregate} events (only the latest event of each
+ * type is kept) or, if {@code maxAge} is set, when it has events older than {@code maxAge} superseded by a newer event
+ * of the same type (those are removed), see {@link InstanceEventLogCompactor}.
+ * <p>
+ * Compacted event logs and reclaimed events are counted as {@value #COMPACTIONS_METER} and {@value
+ * #RECLAIMED_EVENTS_METER} meters.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class IgniteEventStoreCompactor {
+
+    /**
+     * Compacted event logs meter name.
+     */
+    public static final String COMPACTIONS_METER = "spring.boot.admin.event-store.compactions";
+    /**
+     * Reclaimed events meter name.
+     */
+    public static final String RECLAIMED_EVENTS_METER = "spring.boot.admin.event-store.reclaimed";
+    private static final Logger log = LoggerFactory.getLogger(IgniteEventStoreCompactor.class);
+
+    private final IgniteCache<InstanceEventKey, InstanceEvent> eventLogCache;
+    private final IgniteCache<String, InstanceEventLogHead> eventLogHeadCache;
+    private final Counter compactions;
+    private final Counter reclaimed;
+    private int maxLogSizePerAggregate = 100;
+    private long maxAge = 0;
+    private int maxHeadsPerRun = 100;
+    private int nextPartition;
+
+    /**
+     * Instantiates a new Ignite event store compactor.
+     *
+     * @param eventLogCache
+     *     the events, by instance id and version
+     * @param eventLogHeadCache
+     *     the event log heads, by instance id
+     * @param meterRegistry
+     *     the meter registry
+     */
+    public IgniteEventStoreCompactor(IgniteCache<InstanceEventKey, InstanceEvent> eventLogCache,
+        IgniteCache<String, InstanceEventLogHead> eventLogHeadCache, MeterRegistry meterRegistry) {
+        this.eventLogCache = eventLogCache;
+        this.eventLogHeadCache = eventLogHeadCache;
+        this.compactions = Counter.builder(COMPACTIONS_METER).description("Event logs compacted on this node")
+                               .register(meterRegistry);
+        this.reclaimed = Counter.builder(RECLAIMED_EVENTS_METER).baseUnit("events")
+                             .description("Events removed by compaction on this node").register(meterRegistry);
+    }
+
+    /**
+     * Compacts event logs on next primary partitions of this node.
+     */
+    @Scheduled(fixedDelayString = "${spring.boot.admin.ignite.compaction.interval:10000}")
+    public synchronized void compact() {
+        Ignite ignite = eventLogHeadCache.unwrap(Ignite.class);
+        int[] partitions = ignite.affinity(eventLogHeadCache.getName()).primaryPartitions(
+            ignite.cluster().localNode());
+        int maxSize = maxLogSizePerAggregate;
+        // without max age, only event logs exceeding max size are compacted
+        long olderThan = maxAge > 0 ? System.currentTimeMillis() - maxAge : Long.MIN_VALUE;
+        int heads = 0;
+        long events = 0;
+        for (int i = 0; i < partitions.length && heads < maxHeadsPerRun; i++) {
+            nextPartition = nextPartition % partitions.length;
+            int partition = partitions[nextPartition++];
+            // heads and events of an instance are on the same partition, so all is done on this node
+            List<String> instanceIds = new ArrayList<>();
+            try (QueryCursor<Entry<String, InstanceEventLogHead>> cursor = eventLogHeadCache.query(
+                new ScanQuery<String, InstanceEventLogHead>(partition,
+                    (instanceId, head) -> head.needsCompaction(maxSize, olderThan)).setLocal(true))) {
+                cursor.forEach(e -> instanceIds.add(e.getKey()));
+            }
+            for (int j = 0; j < instanceIds.size() && heads < maxHeadsPerRun; j++) {
+                String instanceId = instanceIds.get(j);
+                // head and its events at once, locks are taken here as compaction runs in background
+                try (Transaction tx = ignite.transactions().txStart(PESSIMISTIC, REPEATABLE_READ)) {
+                    long[] compacted = eventLogHeadCache.invoke(instanceId,
+                        new InstanceEventLogCompactor(maxSize, olderThan));
+                    if (compacted.length > 0) {
+                        Set<InstanceEventKey> keys = new HashSet<>();
+                        for (long version : compacted) {
+                            keys.add(new InstanceEventKey(instanceId, version));
+                        }
+                        eventLogCache.removeAll(keys);
+                        heads++;
+                        events += compacted.length;
+                    }
+                    tx.commit();
+                }
+                if (heads >= maxHeadsPerRun && j < instanceIds.size() - 1) {
+                    // rest of the partition on next run
+                    nextPartition--;
+                }
+            }
+        }
+        if (heads > 0) {
+            compactions.increment(heads);
+            reclaimed.increment(events);
+            if (log.isDebugEnabled()) {
+                log.debug("Compacted {} event logs, {} events removed", heads, events);
+            }
+        }
+    }
+
+    /**
+     * Sets the max number of events of an event log before all superseded events are removed.
+     *
+     * @param maxLogSizePerAggregate
+     *     the max log size per aggregate, defaults to 100
+     */
+    public void setMaxLogSizePerAggregate(int maxLogSizePerAggregate) {
+        this.maxLogSizePerAggregate = maxLogSizePerAggregate;
+    }
+
+    /**
+     * Sets the age superseded events are removed after, even if the event log does not exceed the max log size.
+     *
+     * @param maxAge
+     *     the max age in milliseconds, {@code 0} or less to disable it, defaults to 0
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Sets the max number of event logs compacted on each run, after which it continues on next run.
+     *
+     * @param maxHeadsPerRun
+     *     the max event logs per run, defaults to 100
+     */
+    public void setMaxHeadsPerRun(int maxHeadsPerRun) {
+        this.maxHeadsPerRun = maxHeadsPerRun;
+    }
+
+}
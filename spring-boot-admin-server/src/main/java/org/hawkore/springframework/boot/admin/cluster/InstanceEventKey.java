@@ -0,0 +1,94 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.springframework.boot.admin.cluster;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+import de.codecentric.boot.admin.server.domain.events.InstanceEvent;
+import org.apache.ignite.cache.affinity.AffinityKeyMapped;
+
+/**
+ * Key of an event stored by {@link IgniteEventStore}: the instance id and the event version. All events of an instance
+ * are mapped to the same partition (affinity key).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class InstanceEventKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @AffinityKeyMapped
+    private final String instanceId;
+    private final long version;
+
+    /**
+     * Instantiates a new Instance event key.
+     *
+     * @param instanceId
+     *     the instance id
+     * @param version
+     *     the event version
+     */
+    public InstanceEventKey(String instanceId, long version) {
+        this.instanceId = instanceId;
+        this.version = version;
+    }
+
+    /**
+     * Key of the given event.
+     *
+     * @param event
+     *     the event
+     * @return the key
+     */
+    public static InstanceEventKey of(InstanceEvent event) {
+        return new InstanceEventKey(event.getInstance().getValue(), event.getVersion());
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        InstanceEventKey that = (InstanceEventKey)o;
+        return version == that.version && instanceId.equals(that.instanceId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(instanceId, version);
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", InstanceEventKey.class.getSimpleName() + "[", "]")
+                   .add("instanceId='" + instanceId + "'").add("version=" + version).toString();
+    }
+
+}
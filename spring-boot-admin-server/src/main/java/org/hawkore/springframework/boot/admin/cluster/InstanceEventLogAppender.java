@@ -0,0 +1,77 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.springframework.boot.admin.cluster;
+
+import java.util.List;
+
+import de.codecentric.boot.admin.server.domain.events.InstanceEvent;
+import de.codecentric.boot.admin.server.eventstore.OptimisticLockingException;
+import javax.cache.processor.MutableEntry;
+import org.apache.ignite.cache.CacheEntryProcessor;
+
+/**
+ * Appends events to the head record of an instance event log ({@link InstanceEventLogHead}), executed on the primary
+ * node of the head as a single entry operation: checks events are newer than the last stored one and appends them, so
+ * only one of concurrent appends of the same version succeeds. Events are compacted later, see {@link
+ * IgniteEventStoreCompactor}.
+ * <p>
+ * Returns the new head, throws {@link OptimisticLockingException} if appended events were overtaken.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class InstanceEventLogAppender
+    implements CacheEntryProcessor<String, InstanceEventLogHead, InstanceEventLogHead> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] versions;
+    private final String[] types;
+    private final long[] timestamps;
+
+    /**
+     * Instantiates a new Instance event log appender.
+     *
+     * @param events
+     *     the events to append, of the same instance and ascending by version
+     */
+    public InstanceEventLogAppender(List<InstanceEvent> events) {
+        this.versions = new long[events.size()];
+        this.types = new String[events.size()];
+        this.timestamps = new long[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            versions[i] = events.get(i).getVersion();
+            types[i] = events.get(i).getClass().getName();
+            timestamps[i] = events.get(i).getTimestamp().toEpochMilli();
+        }
+    }
+
+    @Override
+    public InstanceEventLogHead process(MutableEntry<String, InstanceEventLogHead> entry, Object... arguments) {
+        InstanceEventLogHead oldHead = entry.exists() ? entry.getValue() : new InstanceEventLogHead();
+
+        long lastVersion = oldHead.getLastVersion();
+
+        if (lastVersion >= versions[0]) {
+            throw new OptimisticLockingException(
+                "Verison " + versions[0] + " was overtaken by " + lastVersion + " for " + entry.getKey());
+        }
+
+        InstanceEventLogHead newHead = oldHead.append(versions, types, timestamps);
+        entry.setValue(newHead);
+        return newHead;
+    }
+
+}
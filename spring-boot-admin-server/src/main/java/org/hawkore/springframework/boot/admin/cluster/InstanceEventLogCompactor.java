@@ -0,0 +1,73 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.springframework.boot.admin.cluster;
+
+import javax.cache.processor.MutableEntry;
+import org.apache.ignite.cache.CacheEntryProcessor;
+
+/**
+ * Compacts the head record of an instance event log ({@link InstanceEventLogHead}), executed within a transaction that
+ * locks the head, so a concurrent append waits for the compaction: if there are more events than the max log size,
+ * only the latest event of each type is kept, otherwise superseded events older than the given timestamp are removed.
+ * <p>
+ * Returns the versions removed from the head, whose events must then be removed.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class InstanceEventLogCompactor implements CacheEntryProcessor<String, InstanceEventLogHead, long[]> {
+
+    private static final long serialVersionUID = 1L;
+    private static final long[] NOTHING_COMPACTED = new long[0];
+
+    private final int maxLogSizePerAggregate;
+    private final long olderThan;
+
+    /**
+     * Instantiates a new Instance event log compactor.
+     *
+     * @param maxLogSizePerAggregate
+     *     the max log size per aggregate
+     * @param olderThan
+     *     the timestamp (epoch millis) superseded events are removed before
+     */
+    public InstanceEventLogCompactor(int maxLogSizePerAggregate, long olderThan) {
+        this.maxLogSizePerAggregate = maxLogSizePerAggregate;
+        this.olderThan = olderThan;
+    }
+
+    @Override
+    public long[] process(MutableEntry<String, InstanceEventLogHead> entry, Object... arguments) {
+        if (!entry.exists() || !entry.getValue().needsCompaction(maxLogSizePerAggregate, olderThan)) {
+            // compacted meanwhile
+            return NOTHING_COMPACTED;
+        }
+        InstanceEventLogHead oldHead = entry.getValue();
+        InstanceEventLogHead newHead = oldHead.compact(
+            oldHead.size() > maxLogSizePerAggregate ? Long.MAX_VALUE : olderThan);
+
+        long[] compacted = new long[oldHead.size() - newHead.size()];
+        int i = 0;
+        for (long version : oldHead.getVersions()) {
+            if (!newHead.contains(version)) {
+                compacted[i++] = version;
+            }
+        }
+
+        entry.setValue(newHead);
+        return compacted;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.springframework.boot.admin.cluster;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Head record of the event log of an instance stored by {@link IgniteEventStore}: versions of stored events
+ * (ascending), their event types and timestamps, so events are appended and compacted without reading them.
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+public class InstanceEventLogHead implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final long[] NO_VERSIONS = new long[0];
+    private static final String[] NO_TYPES = new String[0];
+
+    private final long[] versions;
+    private final String[] types;
+    private final long[] timestamps;
+
+    /**
+     * Instantiates an empty Instance event log head.
+     */
+    public InstanceEventLogHead() {
+        this(NO_VERSIONS, NO_TYPES, NO_VERSIONS);
+    }
+
+    private InstanceEventLogHead(long[] versions, String[] types, long[] timestamps) {
+        this.versions = versions;
+        this.types = types;
+        this.timestamps = timestamps;
+    }
+
+    /**
+     * @return the versions of stored events, ascending
+     */
+    public long[] getVersions() {
+        return versions;
+    }
+
+    /**
+     * @return the timestamps (epoch millis) of stored events, in the same order as versions
+     */
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    /**
+     * @return the number of stored events
+     */
+    public int size() {
+        return versions.length;
+    }
+
+    /**
+     * @return the version of the last stored event, -1 if none
+     */
+    public long getLastVersion() {
+        return versions.length == 0 ? -1 : versions[versions.length - 1];
+    }
+
+    /**
+     * Head with the given events appended, which must be newer than the last stored event.
+     *
+     * @param appendVersions
+     *     the versions of events to append, ascending
+     * @param appendTypes
+     *     the types of events to append
+     * @param appendTimestamps
+     *     the timestamps (epoch millis) of events to append
+     * @return the new head
+     */
+    public InstanceEventLogHead append(long[] appendVersions, String[] appendTypes, long[] appendTimestamps) {
+        long[] newVersions = Arrays.copyOf(versions, versions.length + appendVersions.length);
+        String[] newTypes = Arrays.copyOf(types, types.length + appendTypes.length);
+        long[] newTimestamps = Arrays.copyOf(timestamps, timestamps.length + appendTimestamps.length);
+        System.arraycopy(appendVersions, 0, newVersions, versions.length, appendVersions.length);
+        System.arraycopy(appendTypes, 0, newTypes, types.length, appendTypes.length);
+        System.arraycopy(appendTimestamps, 0, newTimestamps, timestamps.length, appendTimestamps.length);
+        return new InstanceEventLogHead(newVersions, newTypes, newTimestamps);
+    }
+
+    /**
+     * Whether events should be compacted: there are more than the max log size, or an event older than the given
+     * timestamp was superseded by a newer event of the same type.
+     *
+     * @param maxLogSizePerAggregate
+     *     the max log size per aggregate
+     * @param olderThan
+     *     the timestamp (epoch millis) superseded events are compacted before
+     * @return true if events should be compacted
+     */
+    public boolean needsCompaction(int maxLogSizePerAggregate, long olderThan) {
+        if (versions.length > maxLogSizePerAggregate) {
+            return true;
+        }
+        Set<String> seen = new HashSet<>();
+        for (int i = versions.length - 1; i >= 0; i--) {
+            if (!seen.add(types[i]) && timestamps[i] < olderThan) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Head without events older than the given timestamp superseded by a newer event of the same type. With {@link
+     * Long#MAX_VALUE}, only the latest event of each event type is kept, as done by
+     * de.codecentric.boot.admin.server.eventstore.ConcurrentMapEventStore.
+     *
+     * @param olderThan
+     *     the timestamp (epoch millis) superseded events are removed before
+     * @return the new head
+     */
+    public InstanceEventLogHead compact(long olderThan) {
+        Set<String> seen = new HashSet<>();
+        boolean[] keep = new boolean[versions.length];
+        int kept = 0;
+        for (int i = versions.length - 1; i >= 0; i--) {
+            if (seen.add(types[i]) || timestamps[i] >= olderThan) {
+                keep[i] = true;
+                kept++;
+            }
+        }
+        long[] newVersions = new long[kept];
+        String[] newTypes = new String[kept];
+        long[] newTimestamps = new long[kept];
+        for (int i = 0, j = 0; i < versions.length; i++) {
+            if (keep[i]) {
+                newVersions[j] = versions[i];
+                newTypes[j] = types[i];
+                newTimestamps[j++] = timestamps[i];
+            }
+        }
+        return new InstanceEventLogHead(newVersions, newTypes, newTimestamps);
+    }
+
+    /**
+     * Whether an event version is stored.
+     *
+     * @param version
+     *     the event version
+     * @return true if stored
+     */
+    public boolean contains(long version) {
+        return Arrays.binarySearch(versions, version) >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", InstanceEventLogHead.class.getSimpleName() + "[", "]")
+                   .add("versions=" + Arrays.toString(versions)).toString();
+    }
+
+}
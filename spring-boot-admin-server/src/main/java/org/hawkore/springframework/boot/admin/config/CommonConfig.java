@@ -15,8 +15,6 @@
  */
 package org.hawkore.springframework.boot.admin.config;
 
-import java.util.List;
-
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
@@ -25,13 +23,18 @@ import de.codecentric.boot.admin.server.domain.values.Registration;
 import de.codecentric.boot.admin.server.notify.NotificationTrigger;
 import de.codecentric.boot.admin.server.notify.Notifier;
 import de.codecentric.boot.admin.server.utils.jackson.RegistrationDeserializer;
+import io.micrometer.core.instrument.MeterRegistry;
 import javax.cache.expiry.CreatedExpiryPolicy;
 import javax.cache.expiry.Duration;
 import org.apache.ignite.Ignite;
+import org.apache.ignite.IgniteCache;
 import org.apache.ignite.cache.CacheAtomicityMode;
 import org.apache.ignite.cache.CacheMode;
 import org.apache.ignite.configuration.CacheConfiguration;
 import org.hawkore.springframework.boot.admin.cluster.IgniteEventStore;
+import org.hawkore.springframework.boot.admin.cluster.IgniteEventStoreCompactor;
+import org.hawkore.springframework.boot.admin.cluster.InstanceEventKey;
+import org.hawkore.springframework.boot.admin.cluster.InstanceEventLogHead;
 import org.hawkore.springframework.boot.admin.cluster.IgniteNotificationTrigger;
 import org.reactivestreams.Publisher;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,27 +54,68 @@ import org.springframework.context.annotation.Primary;
 public class CommonConfig {
 
     private static final String DEFAULT_NAME_EVENT_STORE_CACHE = "spring-boot-admin-event-store";
+    private static final String EVENT_STORE_HEAD_CACHE_SUFFIX = "-head";
     @Value("${spring.boot.admin.ignite.event-store:" + DEFAULT_NAME_EVENT_STORE_CACHE + "}")
     private String nameEventStore;
 
     /**
-     * Creates an event store for Spring Boot Admin server in cluster
+     * Creates an event store for Spring Boot Admin server in cluster, with a cache of events and a cache of event log
+     * heads (same name with {@value #EVENT_STORE_HEAD_CACHE_SUFFIX} suffix)
      *
      * @param ignite
      *     the ignite instance
-     * @param maxLogSizePerAggregate
-     *     the max log size per aggregate, default 100
      * @return the ignite event store
      * @See de.codecentric.boot.admin.server.config.AdminServerAutoConfiguration
      */
     @Bean
-    public IgniteEventStore eventStore(@Autowired Ignite ignite,
-        @Value("${spring.boot.admin.server.max_events_per_aggregate:100}") int maxLogSizePerAggregate) {
-        CacheConfiguration<String, List<InstanceEvent>> config = new CacheConfiguration<>();
+    public IgniteEventStore eventStore(@Autowired Ignite ignite) {
+        return new IgniteEventStore(eventLogCache(ignite), eventLogHeadCache(ignite));
+    }
+
+    /**
+     * Creates a background compactor of event logs stored by the event store, run on every Spring Boot Admin server
+     * node for its own primary partitions
+     *
+     * @param ignite
+     *     the ignite instance
+     * @param meterRegistry
+     *     the meter registry for compaction metrics
+     * @param maxLogSizePerAggregate
+     *     the max log size per aggregate, default 100
+     * @param maxAge
+     *     the age in milliseconds superseded events are removed after, default 0 (disabled)
+     * @param maxHeadsPerRun
+     *     the max event logs compacted per run, default 100
+     * @return the ignite event store compactor
+     */
+    @Bean
+    public IgniteEventStoreCompactor eventStoreCompactor(@Autowired Ignite ignite,
+        @Autowired MeterRegistry meterRegistry,
+        @Value("${spring.boot.admin.server.max_events_per_aggregate:100}") int maxLogSizePerAggregate,
+        @Value("${spring.boot.admin.ignite.compaction.max-age:0}") long maxAge,
+        @Value("${spring.boot.admin.ignite.compaction.max-per-run:100}") int maxHeadsPerRun) {
+        IgniteEventStoreCompactor compactor = new IgniteEventStoreCompactor(eventLogCache(ignite),
+            eventLogHeadCache(ignite), meterRegistry);
+        compactor.setMaxLogSizePerAggregate(maxLogSizePerAggregate);
+        compactor.setMaxAge(maxAge);
+        compactor.setMaxHeadsPerRun(maxHeadsPerRun);
+        return compactor;
+    }
+
+    private IgniteCache<InstanceEventKey, InstanceEvent> eventLogCache(Ignite ignite) {
+        CacheConfiguration<InstanceEventKey, InstanceEvent> config = new CacheConfiguration<>();
         config.setName(nameEventStore);
         config.setAtomicityMode(CacheAtomicityMode.TRANSACTIONAL);
         config.setCacheMode(CacheMode.REPLICATED);
-        return new IgniteEventStore(maxLogSizePerAggregate, ignite.getOrCreateCache(config));
+        return ignite.getOrCreateCache(config);
+    }
+
+    private IgniteCache<String, InstanceEventLogHead> eventLogHeadCache(Ignite ignite) {
+        CacheConfiguration<String, InstanceEventLogHead> config = new CacheConfiguration<>();
+        config.setName(nameEventStore + EVENT_STORE_HEAD_CACHE_SUFFIX);
+        config.setAtomicityMode(CacheAtomicityMode.TRANSACTIONAL);
+        config.setCacheMode(CacheMode.REPLICATED);
+        return ignite.getOrCreateCache(config);
     }
 
     /**
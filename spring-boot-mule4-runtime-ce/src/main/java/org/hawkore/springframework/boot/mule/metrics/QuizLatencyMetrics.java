@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 HAWKORE, S.L.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkore.springframework.boot.mule.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.NotificationFilter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes Quiz latency histograms registered as JMX MBeans by deployed Mule applications
+ * ({@code org.hawkore.samples.quiz:type=Latency,*}) as Micrometer meters, so they are available on actuator metrics
+ * endpoint (/actuator/metrics/quiz.latency):
+ * <ul>
+ * <li>{@code quiz.latency} time gauges, with {@code quantile} tag (0.5, 0.9, 0.99, 0.999)</li>
+ * <li>{@code quiz.latency.mean} and {@code quiz.latency.max} time gauges</li>
+ * <li>{@code quiz.latency.count} counter</li>
+ * </ul>
+ * All of them tagged with {@code stage} (queueWait, dispatch, endToEnd), {@code by} (worker, api) and {@code ip}.
+ * <p>
+ * MBeans are read through JMX because Mule applications classes are not visible from Mule runtime. Meters are added
+ * and removed as MBeans are registered and unregistered (Mule applications deployed and undeployed).
+ *
+ * @author Manuel Núñez Sánchez (manuel.nunez@hawkore.com)
+ */
+@Component
+public class QuizLatencyMetrics implements MeterBinder, NotificationListener {
+
+    private static final Logger log = LoggerFactory.getLogger(QuizLatencyMetrics.class);
+    private static final String PATTERN = "org.hawkore.samples.quiz:type=Latency,*";
+    private static final String[][] QUANTILES = {{"0.5", "P50"}, {"0.9", "P90"}, {"0.99", "P99"}, {"0.999", "P999"}};
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final Map<ObjectName, List<Meter>> meters = new ConcurrentHashMap<>();
+    private final ObjectName pattern;
+    private MeterRegistry registry;
+
+    /**
+     * Instantiates a new Quiz latency metrics binder.
+     *
+     * @throws MalformedObjectNameException
+     *     never
+     */
+    public QuizLatencyMetrics() throws MalformedObjectNameException {
+        this.pattern = new ObjectName(PATTERN);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        try {
+            NotificationFilter filter = notification -> notification instanceof MBeanServerNotification
+                                                            && pattern.apply(
+                ((MBeanServerNotification)notification).getMBeanName());
+            server.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, filter, null);
+        } catch (InstanceNotFoundException e) {
+            log.warn("Unable to listen for Quiz latency MBeans: {}", e.getMessage());
+        }
+        server.queryNames(pattern, null).forEach(this::add);
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        ObjectName name = ((MBeanServerNotification)notification).getMBeanName();
+        if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(notification.getType())) {
+            add(name);
+        } else if (MBeanServerNotification.UNREGISTRATION_NOTIFICATION.equals(notification.getType())) {
+            remove(name);
+        }
+    }
+
+    private void add(ObjectName name) {
+        Tags tags;
+        try {
+            tags = Tags.of("stage", (String)server.getAttribute(name, "Stage"), "by",
+                (String)server.getAttribute(name, "By"), "ip", (String)server.getAttribute(name, "Ip"));
+        } catch (JMException e) {
+            log.debug("Unable to read Quiz latency MBean {}: {}", name, e.getMessage());
+            return;
+        }
+        List<Meter> added = new ArrayList<>();
+        for (String[] quantile : QUANTILES) {
+            added.add(TimeGauge.builder("quiz.latency", name, TimeUnit.MILLISECONDS, n -> attribute(n, quantile[1]))
+                          .tags(tags).tag("quantile", quantile[0]).description("Quiz latency percentile")
+                          .register(registry));
+        }
+        added.add(TimeGauge.builder("quiz.latency.mean", name, TimeUnit.MILLISECONDS, n -> attribute(n, "Mean"))
+                      .tags(tags).description("Quiz mean latency").register(registry));
+        added.add(TimeGauge.builder("quiz.latency.max", name, TimeUnit.MILLISECONDS, n -> attribute(n, "Max"))
+                      .tags(tags).description("Quiz max latency").register(registry));
+        added.add(FunctionCounter.builder("quiz.latency.count", name, n -> attribute(n, "Count")).tags(tags)
+                      .description("Quizzes measured").register(registry));
+        List<Meter> previous = meters.put(name, added);
+        if (previous != null) {
+            previous.stream().filter(meter -> !added.contains(meter)).forEach(registry::remove);
+        }
+    }
+
+    private void remove(ObjectName name) {
+        List<Meter> removed = meters.remove(name);
+        if (removed != null) {
+            removed.forEach(registry::remove);
+        }
+    }
+
+    private double attribute(ObjectName name, String attribute) {
+        try {
+            return ((Number)server.getAttribute(name, attribute)).doubleValue();
+        } catch (JMException e) {
+            return Double.NaN;
+        }
+    }
+
+}